@@ -2,8 +2,10 @@ package it.gov.pagopa.mocker.config;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class MockerConfigApplication {
 
     public static void main(String[] args) {
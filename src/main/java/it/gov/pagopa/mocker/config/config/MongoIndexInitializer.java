@@ -0,0 +1,100 @@
+package it.gov.pagopa.mocker.config.config;
+
+import it.gov.pagopa.mocker.config.entity.ArchetypeEntity;
+import it.gov.pagopa.mocker.config.entity.ArchetypeSchemaEntity;
+import it.gov.pagopa.mocker.config.entity.MockResourceChangeEntity;
+import it.gov.pagopa.mocker.config.entity.MockResourceEntity;
+import it.gov.pagopa.mocker.config.entity.OutboxEntity;
+import it.gov.pagopa.mocker.config.entity.ScriptEntity;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.aggregation.StringOperators;
+import org.springframework.data.mongodb.core.index.IndexDefinition;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Creates on startup the indexes declared on the entities, as the automatic index creation of
+ * Spring Data is disabled, and fills the derived fields needed by them on the documents
+ * stored before their introduction.
+ * The unique indexes are the only conflict check made on creation, so the startup fails if one of them
+ * cannot be created, reporting the stored duplicates that prevent it.
+ */
+@Component
+@Slf4j
+@ConditionalOnProperty(value = "mongodb.ensure-indexes", havingValue = "true", matchIfMissing = true)
+public class MongoIndexInitializer {
+
+    private static final int REPORTED_DUPLICATES = 10;
+
+    private static final List<Class<?>> INDEXED_ENTITIES = List.of(MockResourceEntity.class, ArchetypeEntity.class, ArchetypeSchemaEntity.class, ScriptEntity.class, OutboxEntity.class, MockResourceChangeEntity.class);
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        IndexResolver indexResolver = IndexResolver.create(mongoTemplate.getConverter().getMappingContext());
+        List<String> missingUniqueIndexes = new ArrayList<>();
+        for (Class<?> entityClass : INDEXED_ENTITIES) {
+            IndexOperations indexOperations = mongoTemplate.indexOps(entityClass);
+            for (IndexDefinition indexDefinition : indexResolver.resolveIndexFor(entityClass)) {
+                try {
+                    indexOperations.ensureIndex(indexDefinition);
+                } catch (Exception e) {
+                    log.error(String.format("An error occurred while trying to create the index [%s] for the entity [%s].", indexDefinition.getIndexKeys().toJson(), entityClass.getSimpleName()), e);
+                    if (indexDefinition.getIndexOptions().getBoolean("unique", false)) {
+                        reportDuplicates(entityClass, indexDefinition.getIndexKeys());
+                        missingUniqueIndexes.add(String.format("%s %s", entityClass.getSimpleName(), indexDefinition.getIndexKeys().toJson()));
+                    }
+                }
+            }
+        }
+        if (!missingUniqueIndexes.isEmpty()) {
+            throw new IllegalStateException(String.format("The unique indexes %s cannot be created, so the duplicates would not be rejected. Remove the reported duplicates and restart.", missingUniqueIndexes));
+        }
+        backfillNormalizedNames();
+    }
+
+    private void reportDuplicates(Class<?> entityClass, Document indexKeys) {
+        try {
+            Aggregation aggregation = Aggregation.newAggregation(
+                    Aggregation.group(indexKeys.keySet().toArray(String[]::new)).count().as("count").addToSet("_id").as("ids"),
+                    Aggregation.match(Criteria.where("count").gt(1)),
+                    Aggregation.limit(REPORTED_DUPLICATES));
+            for (Document duplicate : mongoTemplate.aggregate(aggregation, mongoTemplate.getCollectionName(entityClass), Document.class)) {
+                log.error(String.format("Duplicated [%s] documents for the unique index [%s]: %s", entityClass.getSimpleName(), indexKeys.toJson(), duplicate.toJson()));
+            }
+        } catch (Exception e) {
+            log.error(String.format("An error occurred while trying to find the duplicates for the index [%s] of the entity [%s].", indexKeys.toJson(), entityClass.getSimpleName()), e);
+        }
+    }
+
+    private void backfillNormalizedNames() {
+        try {
+            long updated = mongoTemplate.updateMulti(
+                    Query.query(Criteria.where("normalizedName").exists(false).and("name").exists(true)),
+                    AggregationUpdate.update().set("normalizedName").toValueOf(StringOperators.valueOf(StringOperators.valueOf("name").trim()).toLower()),
+                    MockResourceEntity.class
+            ).getModifiedCount();
+            if (updated > 0) {
+                log.info(String.format("Normalized name generated for [%d] mock resources", updated));
+            }
+        } catch (Exception e) {
+            log.error("An error occurred while trying to generate the normalized name for the stored mock resources. ", e);
+        }
+    }
+}
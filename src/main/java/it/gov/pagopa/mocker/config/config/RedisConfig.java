@@ -3,14 +3,22 @@ package it.gov.pagopa.mocker.config.config;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 import com.fasterxml.jackson.annotation.PropertyAccessor;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import it.gov.pagopa.mocker.config.model.enumeration.RedisValueFormat;
+import it.gov.pagopa.mocker.config.service.MockResourceChangeBroadcaster;
+import it.gov.pagopa.mocker.config.util.Constants;
+import it.gov.pagopa.mocker.config.util.serializer.RedisValueSerializer;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceClientConfiguration;
 import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 @Configuration
@@ -25,6 +33,12 @@ public class RedisConfig {
     @Value("${spring.redis.pwd}")
     private String redisPwd;
 
+    @Value("${redis.value.format:JSON}")
+    private RedisValueFormat valueFormat;
+
+    @Value("${redis.value.compression-threshold:-1}")
+    private int compressionThreshold;
+
     @Bean
     public ObjectMapper objectMapper() {
         final var objectMapper = new ObjectMapper().findAndRegisterModules();
@@ -48,8 +62,31 @@ public class RedisConfig {
             final LettuceConnectionFactory connectionFactory, ObjectMapper objectMapper) {
 
         RedisTemplate<String, Object> template = new RedisTemplate<>();
-        template.setDefaultSerializer(new StringRedisSerializer()); // set here
+        template.setDefaultSerializer(new StringRedisSerializer());
+        RedisValueSerializer valueSerializer = new RedisValueSerializer(getValueObjectMapper(objectMapper), compressionThreshold);
+        template.setValueSerializer(valueSerializer);
+        template.setHashValueSerializer(valueSerializer);
         template.setConnectionFactory(connectionFactory);
         return template;
     }
+
+    @Bean
+    @ConditionalOnProperty(value = "changes.push.broadcast.enabled", havingValue = "true", matchIfMissing = true)
+    public RedisMessageListenerContainer mockResourceChangeListenerContainer(
+            final LettuceConnectionFactory connectionFactory, MockResourceChangeBroadcaster mockResourceChangeBroadcaster) {
+
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(mockResourceChangeBroadcaster, new ChannelTopic(Constants.MOCK_RESOURCE_CHANGE_CHANNEL));
+        return container;
+    }
+
+    private ObjectMapper getValueObjectMapper(ObjectMapper objectMapper) {
+        ObjectMapper valueObjectMapper = objectMapper;
+        if (RedisValueFormat.SMILE.equals(valueFormat)) {
+            valueObjectMapper = new ObjectMapper(new SmileFactory()).findAndRegisterModules();
+            valueObjectMapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY);
+        }
+        return valueObjectMapper;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,26 @@
+package it.gov.pagopa.mocker.config.config;
+
+import it.gov.pagopa.mocker.config.model.enumeration.SearchMode;
+import it.gov.pagopa.mocker.config.repository.specification.search.MockResourceSearchEngine;
+import it.gov.pagopa.mocker.config.repository.specification.search.PrefixMockResourceSearchEngine;
+import it.gov.pagopa.mocker.config.repository.specification.search.RegexMockResourceSearchEngine;
+import it.gov.pagopa.mocker.config.repository.specification.search.TextMockResourceSearchEngine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class SearchConfig {
+
+    @Value("${search.mode:REGEX}")
+    private SearchMode searchMode;
+
+    @Bean
+    public MockResourceSearchEngine mockResourceSearchEngine() {
+        return switch (searchMode) {
+            case REGEX -> new RegexMockResourceSearchEngine();
+            case TEXT -> new TextMockResourceSearchEngine();
+            case PREFIX -> new PrefixMockResourceSearchEngine();
+        };
+    }
+}
@@ -5,6 +5,7 @@ import it.gov.pagopa.mocker.config.model.AppCorsConfiguration;
 import lombok.SneakyThrows;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -24,7 +25,8 @@ public class WebMvcConfiguration implements WebMvcConfigurer {
     ).orElse(new AppCorsConfiguration());
     registry.addMapping("/**")
         .allowedOrigins(Optional.ofNullable(appCorsConfiguration.getOrigins()).orElse(new String[]{}))
-        .allowedMethods(Optional.ofNullable(appCorsConfiguration.getMethods()).orElse(new String[]{}));
+        .allowedMethods(Optional.ofNullable(appCorsConfiguration.getMethods()).orElse(new String[]{}))
+        .exposedHeaders(HttpHeaders.ETAG);
   }
 }
 
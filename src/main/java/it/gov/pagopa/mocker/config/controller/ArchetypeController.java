@@ -13,11 +13,14 @@ import it.gov.pagopa.mocker.config.model.archetype.Archetype;
 import it.gov.pagopa.mocker.config.model.archetype.ArchetypeHandlingResult;
 import it.gov.pagopa.mocker.config.model.archetype.ArchetypeList;
 import it.gov.pagopa.mocker.config.model.archetype.MockResourceFromArchetype;
+import it.gov.pagopa.mocker.config.model.enumeration.ArchetypeImportMode;
 import it.gov.pagopa.mocker.config.model.mockresource.MockResource;
 import it.gov.pagopa.mocker.config.service.ArchetypeService;
+import it.gov.pagopa.mocker.config.util.Utility;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -62,8 +65,12 @@ public class ArchetypeController {
             @Parameter()
             @NotBlank @RequestParam("subsystem") String subsystem,
             @Parameter(description = "JSON file containing the OpenAPI to analyze", required = true, content = @Content(mediaType = MediaType.APPLICATION_OCTET_STREAM_VALUE))
-            @NotNull @RequestParam("file") MultipartFile file) {
-        return ResponseEntity.status(HttpStatus.CREATED).body(archetypeService.importArchetypesFromOpenAPI(file, subsystem));
+            @NotNull @RequestParam("file") MultipartFile file,
+            @Parameter(description = "The way the operations already imported for the subsystem are handled. In SKIP_EXISTING mode they are left untouched, in DIFF mode the changed ones are updated.")
+            @RequestParam(required = false, defaultValue = "SKIP_EXISTING") ArchetypeImportMode mode,
+            @Parameter(description = "The flag that define if, in DIFF mode, the imported operations not defined anymore in the OpenAPI must be deleted.")
+            @RequestParam(name = "delete_removed", required = false, defaultValue = "false") boolean deleteRemoved) {
+        return ResponseEntity.status(HttpStatus.CREATED).body(archetypeService.importArchetypesFromOpenAPI(file, subsystem, mode, deleteRemoved));
     }
 
     @Operation(
@@ -86,8 +93,10 @@ public class ArchetypeController {
             @Parameter(description = "The number of elements to be included in the page.", required = true)
             @Valid @RequestParam(required = false, defaultValue = "10") @Positive @Max(999) Integer limit,
             @Parameter(description = "The index of the page, starting from 0.", required = true)
-            @Valid @Min(0) @RequestParam(required = false, defaultValue = "0") Integer page) {
-        return ResponseEntity.ok(archetypeService.getArchetypes(PageRequest.of(page, limit)));
+            @Valid @Min(0) @RequestParam(required = false, defaultValue = "0") Integer page,
+            @Parameter(description = "The cursor returned in the previous page, used for retrieving the next page without skipping the previous items. If passed, the page index is ignored.")
+            @RequestParam(required = false) String cursor) {
+        return ResponseEntity.ok(archetypeService.getArchetypes(PageRequest.of(page, limit), cursor));
     }
 
     @Operation(
@@ -110,7 +119,8 @@ public class ArchetypeController {
     public ResponseEntity<Archetype> getArchetype(
             @Parameter(description = "The identifier related to the archetype", required = true)
             @NotBlank @PathVariable("archetypeId") String archetypeId) {
-        return ResponseEntity.ok(archetypeService.getArchetype(archetypeId));
+        Archetype archetype = archetypeService.getArchetype(archetypeId);
+        return ResponseEntity.ok().eTag(Utility.generateETag(archetype.getVersion())).body(archetype);
     }
 
 
@@ -149,6 +159,8 @@ public class ArchetypeController {
             @ApiResponse(responseCode = "401", description = "Unauthorized", content = @Content(schema = @Schema())),
             @ApiResponse(responseCode = "403", description = "Forbidden", content = @Content(schema = @Schema())),
             @ApiResponse(responseCode = "404", description = "Not Found", content = @Content(schema = @Schema(implementation = ProblemJson.class))),
+            @ApiResponse(responseCode = "409", description = "Conflict", content = @Content(schema = @Schema(implementation = ProblemJson.class))),
+            @ApiResponse(responseCode = "412", description = "Precondition Failed", content = @Content(schema = @Schema(implementation = ProblemJson.class))),
             @ApiResponse(responseCode = "429", description = "Too many requests", content = @Content(schema = @Schema())),
             @ApiResponse(responseCode = "500", description = "Service unavailable", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE,schema = @Schema(implementation = ProblemJson.class)))
     })
@@ -156,8 +168,11 @@ public class ArchetypeController {
     public ResponseEntity<Archetype> updateArchetype(
             @Parameter(description = "The identifier related to the archetype", required = true)
             @NotBlank @PathVariable("archetypeId") String archetypeId,
+            @Parameter(description = "The entity tag of the version to be updated, as returned in the ETag header. If it does not match the current version, the update is refused.")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody @Valid @NotNull Archetype archetype) {
-        return ResponseEntity.ok(archetypeService.updateArchetype(archetypeId, archetype));
+        Archetype updatedArchetype = archetypeService.updateArchetype(archetypeId, archetype, ifMatch);
+        return ResponseEntity.ok().eTag(Utility.generateETag(updatedArchetype.getVersion())).body(updatedArchetype);
     }
 
     @Operation(
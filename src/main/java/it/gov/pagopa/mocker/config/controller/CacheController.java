@@ -0,0 +1,77 @@
+package it.gov.pagopa.mocker.config.controller;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import it.gov.pagopa.mocker.config.model.ProblemJson;
+import it.gov.pagopa.mocker.config.model.cache.CacheWarmUpStatus;
+import it.gov.pagopa.mocker.config.service.CacheWarmUpService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+
+@RestController()
+@RequestMapping(path = "/cache")
+@Tag(name = "Cache", description = "Everything about the Redis cache used by Mocker")
+@Validated
+public class CacheController {
+
+    @Autowired
+    private CacheWarmUpService cacheWarmUpService;
+
+    @Operation(
+            summary = "Start the rebuild of the whole Redis cache from the stored mock resources",
+            security = {
+                    @SecurityRequirement(name = "ApiKey"),
+                    @SecurityRequirement(name = "Authorization")
+            },
+            tags = {"Cache"}
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Accepted", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = CacheWarmUpStatus.class))),
+            @ApiResponse(responseCode = "401", description = "Unauthorized", content = @Content(schema = @Schema())),
+            @ApiResponse(responseCode = "403", description = "Forbidden", content = @Content(schema = @Schema())),
+            @ApiResponse(responseCode = "409", description = "Conflict", content = @Content(schema = @Schema(implementation = ProblemJson.class))),
+            @ApiResponse(responseCode = "429", description = "Too many requests", content = @Content(schema = @Schema())),
+            @ApiResponse(responseCode = "500", description = "Service unavailable", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ProblemJson.class)))
+    })
+    @PostMapping(value = "/warm-up", produces = {MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<CacheWarmUpStatus> startWarmUp(
+            @Parameter(description = "The flag that define if the mock resources not stored anymore must be also removed from Redis.")
+            @RequestParam(required = false, defaultValue = "false") boolean reconcile) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(cacheWarmUpService.startWarmUp(reconcile));
+    }
+
+    @Operation(
+            summary = "Get the progress of the Redis cache rebuild",
+            security = {
+                    @SecurityRequirement(name = "ApiKey"),
+                    @SecurityRequirement(name = "Authorization")
+            },
+            tags = {"Cache"}
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "OK", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = CacheWarmUpStatus.class))),
+            @ApiResponse(responseCode = "401", description = "Unauthorized", content = @Content(schema = @Schema())),
+            @ApiResponse(responseCode = "403", description = "Forbidden", content = @Content(schema = @Schema())),
+            @ApiResponse(responseCode = "429", description = "Too many requests", content = @Content(schema = @Schema())),
+            @ApiResponse(responseCode = "500", description = "Service unavailable", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ProblemJson.class)))
+    })
+    @GetMapping(value = "/warm-up", produces = {MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<CacheWarmUpStatus> getWarmUpStatus() {
+        return ResponseEntity.ok(cacheWarmUpService.getStatus());
+    }
+}
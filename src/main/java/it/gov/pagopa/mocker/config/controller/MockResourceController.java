@@ -9,20 +9,34 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import it.gov.pagopa.mocker.config.model.ProblemJson;
+import it.gov.pagopa.mocker.config.model.enumeration.CountMode;
 import it.gov.pagopa.mocker.config.model.mockresource.MockResource;
+import it.gov.pagopa.mocker.config.model.mockresource.MockResourceBulkResult;
+import it.gov.pagopa.mocker.config.model.mockresource.MockResourceChangeEvent;
+import it.gov.pagopa.mocker.config.model.mockresource.MockResourceChangeList;
 import it.gov.pagopa.mocker.config.model.mockresource.MockResourceGeneralInfo;
 import it.gov.pagopa.mocker.config.model.mockresource.MockResourceList;
 import it.gov.pagopa.mocker.config.model.mockresource.MockRule;
+import it.gov.pagopa.mocker.config.service.MockResourceBulkService;
+import it.gov.pagopa.mocker.config.service.MockResourceChangeBroadcaster;
+import it.gov.pagopa.mocker.config.service.MockResourceChangeService;
 import it.gov.pagopa.mocker.config.service.MockResourceService;
+import it.gov.pagopa.mocker.config.util.Utility;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
 import javax.validation.constraints.*;
 
@@ -39,6 +53,18 @@ public class MockResourceController {
     @Autowired
     private MockResourceService mockResourceService;
 
+    @Autowired
+    private MockResourceBulkService mockResourceBulkService;
+
+    @Autowired
+    private MockResourceChangeService mockResourceChangeService;
+
+    @Autowired
+    private MockResourceChangeBroadcaster mockResourceChangeBroadcaster;
+
+    @Value("${bulk.request-timeout:600000}")
+    private long bulkRequestTimeout;
+
     @Operation(
             summary = "Get paginated list of mock resource",
             security = {
@@ -60,11 +86,112 @@ public class MockResourceController {
             @Valid @RequestParam(required = false, defaultValue = "10") @Positive @Max(999) Integer limit,
             @Parameter(description = "The index of the page, starting from 0.", required = true)
             @Valid @Min(0) @RequestParam(required = false, defaultValue = "0") Integer page,
+            @Parameter(description = "The cursor returned in the previous page, used for retrieving the next page without skipping the previous items. If passed, the page index is ignored.")
+            @RequestParam(required = false) String cursor,
             @Parameter(description = "The name of the mock resource, used as a search filter.")
             @RequestParam(required = false) String name,
             @Parameter(description = "The tag of the mock resource, used as a search filter.")
-            @RequestParam(required = false) String tag) {
-        return ResponseEntity.ok(mockResourceService.getMockResources(PageRequest.of(page, limit), name, tag));
+            @RequestParam(required = false) String tag,
+            @Parameter(description = "The way used for counting the total number of items. The estimated count is used only without search filters, otherwise the cached one is used.")
+            @RequestParam(name = "count_mode", required = false, defaultValue = "EXACT") CountMode countMode) {
+        return ResponseEntity.ok(mockResourceService.getMockResources(PageRequest.of(page, limit), cursor, name, tag, countMode));
+    }
+
+    @Operation(
+            summary = "Export all the mock resources as a stream of JSON lines",
+            security = {
+                    @SecurityRequirement(name = "ApiKey"),
+                    @SecurityRequirement(name = "Authorization")
+            },
+            tags = {"Mock Resources"}
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "OK", content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = MockResource.class))),
+            @ApiResponse(responseCode = "401", description = "Unauthorized", content = @Content(schema = @Schema())),
+            @ApiResponse(responseCode = "403", description = "Forbidden", content = @Content(schema = @Schema())),
+            @ApiResponse(responseCode = "429", description = "Too many requests", content = @Content(schema = @Schema())),
+            @ApiResponse(responseCode = "500", description = "Service unavailable", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ProblemJson.class)))
+    })
+    @GetMapping(value = "/export", produces = {MediaType.APPLICATION_NDJSON_VALUE})
+    public WebAsyncTask<Void> exportMockResources(HttpServletResponse response) {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        return new WebAsyncTask<>(bulkRequestTimeout, () -> {
+            mockResourceBulkService.exportMockResources(response.getOutputStream());
+            return null;
+        });
+    }
+
+    @Operation(
+            summary = "Get the mock resources created, updated or deleted after a change token",
+            security = {
+                    @SecurityRequirement(name = "ApiKey"),
+                    @SecurityRequirement(name = "Authorization")
+            },
+            tags = {"Mock Resources"}
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "OK", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = MockResourceChangeList.class))),
+            @ApiResponse(responseCode = "400", description = "Bad Request", content = @Content(schema = @Schema(implementation = ProblemJson.class))),
+            @ApiResponse(responseCode = "401", description = "Unauthorized", content = @Content(schema = @Schema())),
+            @ApiResponse(responseCode = "403", description = "Forbidden", content = @Content(schema = @Schema())),
+            @ApiResponse(responseCode = "410", description = "Gone", content = @Content(schema = @Schema(implementation = ProblemJson.class))),
+            @ApiResponse(responseCode = "429", description = "Too many requests", content = @Content(schema = @Schema())),
+            @ApiResponse(responseCode = "500", description = "Service unavailable", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ProblemJson.class)))
+    })
+    @GetMapping(value = "/changes", produces = {MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<MockResourceChangeList> getMockResourceChanges(
+            @Parameter(description = "The change token returned by the previous call. If not passed, no change is returned but only the token of the current position, from which the changes can be followed after a full read of the mock resources.")
+            @RequestParam(required = false) String since,
+            @Parameter(description = "The maximum number of changes to be read.", required = true)
+            @Valid @RequestParam(required = false, defaultValue = "100") @Positive @Max(1000) Integer limit) {
+        return ResponseEntity.ok(mockResourceChangeService.getChanges(since, limit));
+    }
+
+    @Operation(
+            summary = "Subscribe to the mock resources created, updated or deleted, notified as Server-Sent Events",
+            security = {
+                    @SecurityRequirement(name = "ApiKey"),
+                    @SecurityRequirement(name = "Authorization")
+            },
+            tags = {"Mock Resources"}
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "OK", content = @Content(mediaType = MediaType.TEXT_EVENT_STREAM_VALUE, schema = @Schema(implementation = MockResourceChangeEvent.class))),
+            @ApiResponse(responseCode = "401", description = "Unauthorized", content = @Content(schema = @Schema())),
+            @ApiResponse(responseCode = "403", description = "Forbidden", content = @Content(schema = @Schema())),
+            @ApiResponse(responseCode = "429", description = "Too many requests", content = @Content(schema = @Schema())),
+            @ApiResponse(responseCode = "500", description = "Service unavailable", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ProblemJson.class)))
+    })
+    @GetMapping(value = "/changes/stream", produces = {MediaType.TEXT_EVENT_STREAM_VALUE})
+    public SseEmitter subscribeMockResourceChanges(
+            @Parameter(description = "The subsystem whose mock resource changes must be notified. If not passed, the changes of all the subsystems are notified.")
+            @RequestParam(required = false) String subsystem) {
+        return mockResourceChangeBroadcaster.subscribe(subsystem);
+    }
+
+    @Operation(
+            summary = "Import a stream of mock resources passed as JSON lines, returning the outcome of each one as JSON line",
+            security = {
+                    @SecurityRequirement(name = "ApiKey"),
+                    @SecurityRequirement(name = "Authorization")
+            },
+            tags = {"Mock Resources"}
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "OK", content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = MockResourceBulkResult.class))),
+            @ApiResponse(responseCode = "401", description = "Unauthorized", content = @Content(schema = @Schema())),
+            @ApiResponse(responseCode = "403", description = "Forbidden", content = @Content(schema = @Schema())),
+            @ApiResponse(responseCode = "429", description = "Too many requests", content = @Content(schema = @Schema())),
+            @ApiResponse(responseCode = "500", description = "Service unavailable", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ProblemJson.class)))
+    })
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_NDJSON_VALUE}, produces = {MediaType.APPLICATION_NDJSON_VALUE})
+    public WebAsyncTask<Void> importMockResources(HttpServletRequest request, HttpServletResponse response) {
+        // the response is streamed by the task, whose timeout applies only to the bulk requests
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        return new WebAsyncTask<>(bulkRequestTimeout, () -> {
+            mockResourceBulkService.importMockResources(request.getInputStream(), response.getOutputStream());
+            return null;
+        });
     }
 
     @Operation(
@@ -87,7 +214,8 @@ public class MockResourceController {
     public ResponseEntity<MockResource> getMockResource(
             @Parameter(description = "The identifier related to the mock resource", required = true)
             @NotBlank @PathVariable("resourceId") String resourceId) {
-        return ResponseEntity.ok(mockResourceService.getMockResource(resourceId));
+        MockResource mockResource = mockResourceService.getMockResource(resourceId);
+        return ResponseEntity.ok().eTag(Utility.generateETag(mockResource.getVersion())).body(mockResource);
     }
 
     @Operation(
@@ -152,6 +280,8 @@ public class MockResourceController {
             @ApiResponse(responseCode = "401", description = "Unauthorized", content = @Content(schema = @Schema())),
             @ApiResponse(responseCode = "403", description = "Forbidden", content = @Content(schema = @Schema())),
             @ApiResponse(responseCode = "404", description = "Not Found", content = @Content(schema = @Schema(implementation = ProblemJson.class))),
+            @ApiResponse(responseCode = "409", description = "Conflict", content = @Content(schema = @Schema(implementation = ProblemJson.class))),
+            @ApiResponse(responseCode = "412", description = "Precondition Failed", content = @Content(schema = @Schema(implementation = ProblemJson.class))),
             @ApiResponse(responseCode = "429", description = "Too many requests", content = @Content(schema = @Schema())),
             @ApiResponse(responseCode = "500", description = "Service unavailable", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ProblemJson.class)))
     })
@@ -159,8 +289,11 @@ public class MockResourceController {
     public ResponseEntity<MockResource> updateMockResource(
             @Parameter(description = "The identifier related to the mock resource", required = true)
             @NotBlank @PathVariable("resourceId") String resourceId,
+            @Parameter(description = "The entity tag of the version to be updated, as returned in the ETag header. If it does not match the current version, the update is refused.")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody @Valid @NotNull MockResource mockResource) {
-        return ResponseEntity.ok(mockResourceService.updateMockResource(resourceId, mockResource));
+        MockResource updatedMockResource = mockResourceService.updateMockResource(resourceId, mockResource, ifMatch);
+        return ResponseEntity.ok().eTag(Utility.generateETag(updatedMockResource.getVersion())).body(updatedMockResource);
     }
 
     @Operation(
@@ -177,6 +310,8 @@ public class MockResourceController {
             @ApiResponse(responseCode = "401", description = "Unauthorized", content = @Content(schema = @Schema())),
             @ApiResponse(responseCode = "403", description = "Forbidden", content = @Content(schema = @Schema())),
             @ApiResponse(responseCode = "404", description = "Not Found", content = @Content(schema = @Schema(implementation = ProblemJson.class))),
+            @ApiResponse(responseCode = "409", description = "Conflict", content = @Content(schema = @Schema(implementation = ProblemJson.class))),
+            @ApiResponse(responseCode = "412", description = "Precondition Failed", content = @Content(schema = @Schema(implementation = ProblemJson.class))),
             @ApiResponse(responseCode = "429", description = "Too many requests", content = @Content(schema = @Schema())),
             @ApiResponse(responseCode = "500", description = "Service unavailable", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ProblemJson.class)))
     })
@@ -184,8 +319,11 @@ public class MockResourceController {
     public ResponseEntity<MockResource> updateMockResourceGeneralInfo(
             @Parameter(description = "The identifier related to the mock resource", required = true)
             @NotBlank @PathVariable("resourceId") String resourceId,
+            @Parameter(description = "The entity tag of the version to be updated, as returned in the ETag header. If it does not match the current version, the update is refused.")
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @RequestBody @Valid @NotNull MockResourceGeneralInfo mockResourceGeneralInfo) {
-        return ResponseEntity.ok(mockResourceService.updateMockResourceGeneralInfo(resourceId, mockResourceGeneralInfo));
+        MockResource updatedMockResource = mockResourceService.updateMockResourceGeneralInfo(resourceId, mockResourceGeneralInfo, ifMatch);
+        return ResponseEntity.ok().eTag(Utility.generateETag(updatedMockResource.getVersion())).body(updatedMockResource);
     }
 
     @Operation(
@@ -202,6 +340,7 @@ public class MockResourceController {
             @ApiResponse(responseCode = "401", description = "Unauthorized", content = @Content(schema = @Schema())),
             @ApiResponse(responseCode = "403", description = "Forbidden", content = @Content(schema = @Schema())),
             @ApiResponse(responseCode = "404", description = "Not Found", content = @Content(schema = @Schema(implementation = ProblemJson.class))),
+            @ApiResponse(responseCode = "409", description = "Conflict", content = @Content(schema = @Schema(implementation = ProblemJson.class))),
             @ApiResponse(responseCode = "429", description = "Too many requests", content = @Content(schema = @Schema())),
             @ApiResponse(responseCode = "500", description = "Service unavailable", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ProblemJson.class)))
     })
@@ -215,6 +354,32 @@ public class MockResourceController {
         return ResponseEntity.ok(mockResourceService.updateMockRule(resourceId, ruleId, mockRule));
     }
 
+    @Operation(
+            summary = "Delete an existing mock rule from certain mock resource",
+            security = {
+                    @SecurityRequirement(name = "ApiKey"),
+                    @SecurityRequirement(name = "Authorization")
+            },
+            tags = {"Mock Resources"}
+    )
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "OK", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = MockResource.class))),
+            @ApiResponse(responseCode = "401", description = "Unauthorized", content = @Content(schema = @Schema())),
+            @ApiResponse(responseCode = "403", description = "Forbidden", content = @Content(schema = @Schema())),
+            @ApiResponse(responseCode = "404", description = "Not Found", content = @Content(schema = @Schema(implementation = ProblemJson.class))),
+            @ApiResponse(responseCode = "409", description = "Conflict", content = @Content(schema = @Schema(implementation = ProblemJson.class))),
+            @ApiResponse(responseCode = "429", description = "Too many requests", content = @Content(schema = @Schema())),
+            @ApiResponse(responseCode = "500", description = "Service unavailable", content = @Content(mediaType = MediaType.APPLICATION_JSON_VALUE, schema = @Schema(implementation = ProblemJson.class)))
+    })
+    @DeleteMapping(value = "/{resourceId}/rules/{ruleId}", produces = {MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<MockResource> deleteMockRule(
+            @Parameter(description = "The identifier related to the mock resource", required = true)
+            @NotBlank @PathVariable("resourceId") String resourceId,
+            @Parameter(description = "The identifier related to the mock rule", required = true)
+            @NotBlank @PathVariable("ruleId") String ruleId) {
+        return ResponseEntity.ok(mockResourceService.deleteMockRule(resourceId, ruleId));
+    }
+
     @Operation(
             summary = "Delete an existing mock resource",
             security = {
@@ -2,6 +2,7 @@ package it.gov.pagopa.mocker.config.entity;
 
 import it.gov.pagopa.mocker.config.model.enumeration.HttpMethod;
 import lombok.*;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.persistence.*;
@@ -13,6 +14,8 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @EqualsAndHashCode(of = "id")
+@CompoundIndex(name = "name_id_idx", def = "{'name': 1, '_id': 1}")
+@CompoundIndex(name = "resource_idx", def = "{'subsystemUrl': 1, 'resourceUrl': 1, 'httpMethod': 1}", unique = true)
 @Document("archetypes")
 @ToString
 public class ArchetypeEntity implements Serializable {
@@ -35,4 +38,8 @@ public class ArchetypeEntity implements Serializable {
     private List<ArchetypeResponseEntity> responses;
 
     private List<String> tags;
+
+    private String fingerprint;
+
+    private Long version;
 }
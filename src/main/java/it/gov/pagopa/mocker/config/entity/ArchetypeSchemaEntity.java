@@ -2,6 +2,7 @@ package it.gov.pagopa.mocker.config.entity;
 
 
 import lombok.*;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.persistence.*;
@@ -14,6 +15,7 @@ import java.util.Objects;
 @NoArgsConstructor
 @AllArgsConstructor
 @EqualsAndHashCode(of = "id")
+@CompoundIndex(name = "subsystem_hash_idx", def = "{'subsystem': 1, 'hash': 1}", unique = true)
 @Document("archetype_schema")
 @ToString
 public class ArchetypeSchemaEntity implements Serializable {
@@ -25,5 +27,7 @@ public class ArchetypeSchemaEntity implements Serializable {
 
     private String subsystem;
 
+    private String hash;
+
     private String content;
 }
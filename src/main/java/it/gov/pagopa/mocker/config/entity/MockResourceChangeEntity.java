@@ -0,0 +1,33 @@
+package it.gov.pagopa.mocker.config.entity;
+
+
+import lombok.*;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import javax.persistence.Id;
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * An entry of the mock resource change log, identified by a global sequence. The entry only references
+ * the changed resource, whose current content (or absence) is read when the change is requested.
+ * The entries are kept for seven days.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(of = "id")
+@Document("mock_resource_changes")
+@ToString
+public class MockResourceChangeEntity implements Serializable {
+
+    @Id
+    private Long id;
+
+    private String resourceId;
+
+    @Indexed(name = "changed_at_ttl_idx", expireAfter = "7d")
+    private Instant changedAt;
+}
@@ -2,7 +2,9 @@ package it.gov.pagopa.mocker.config.entity;
 
 import it.gov.pagopa.mocker.config.model.enumeration.HttpMethod;
 import lombok.*;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.index.TextIndexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import javax.persistence.Id;
@@ -15,6 +17,7 @@ import java.util.Set;
 @NoArgsConstructor
 @AllArgsConstructor
 @EqualsAndHashCode(of = "id")
+@CompoundIndex(name = "name_id_idx", def = "{'name': 1, '_id': 1}")
 @Document("mock_resources")
 @ToString
 public class MockResourceEntity implements Serializable {
@@ -33,12 +36,18 @@ public class MockResourceEntity implements Serializable {
     private Boolean isActive;
 
     @Indexed(name = "name_idx")
+    @TextIndexed
     private String name;
 
+    @Indexed(name = "normalized_name_idx")
+    private String normalizedName;
+
     private String archetypeId;
 
     @Indexed(name = "tags_idx")
     private Set<String> tags;
 
     private List<MockRuleEntity> rules;
+
+    private Long version;
 }
@@ -0,0 +1,43 @@
+package it.gov.pagopa.mocker.config.entity;
+
+
+import lombok.*;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import javax.persistence.Id;
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * A change on a mock resource not yet propagated to Redis. The record is identified by the identifier of
+ * the changed resource, so the changes made on the same resource before the propagation share a single record.
+ * A record is ready once the change is stored, while a record not ready is relayed only after a timeout,
+ * i.e. if the process stopped between the record write and the change write.
+ * A relay claims the records it is propagating for a lease, so the same change is never relayed by two
+ * replicas at the same time and an older content cannot overwrite a newer one on Redis.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(of = "id")
+@Document("outbox")
+@ToString
+public class OutboxEntity implements Serializable {
+
+    @Id
+    private String id;
+
+    private Long revision;
+
+    private Boolean ready;
+
+    @Indexed(name = "updated_at_idx")
+    private Instant updatedAt;
+
+    @Indexed(name = "claimed_by_idx", sparse = true)
+    private String claimedBy;
+
+    private Instant leaseUntil;
+}
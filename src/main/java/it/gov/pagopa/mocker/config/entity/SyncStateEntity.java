@@ -0,0 +1,37 @@
+package it.gov.pagopa.mocker.config.entity;
+
+
+import lombok.*;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import javax.persistence.Id;
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * The position reached by a synchronization process, stored for resuming it after a restart: the resume
+ * token of a change stream, kept as its JSON representation, or the last sequence allocated for a change log.
+ * A process that must run on a single replica also holds here its lease, renewed while it is running.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode(of = "id")
+@Document("sync_state")
+@ToString
+public class SyncStateEntity implements Serializable {
+
+    @Id
+    private String id;
+
+    private String resumeToken;
+
+    private Long sequence;
+
+    private String owner;
+
+    private Instant leaseUntil;
+
+    private Instant updatedAt;
+}
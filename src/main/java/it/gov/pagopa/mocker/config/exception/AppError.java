@@ -9,7 +9,13 @@ public enum AppError {
 
 
     INTERNAL_SERVER_ERROR(HttpStatus.INTERNAL_SERVER_ERROR, "Internal Server Error", "Something went wrong."),
+    PAGE_CURSOR_BAD_REQUEST_INVALID(HttpStatus.BAD_REQUEST, "Invalid page cursor", "The passed page cursor [%s] is invalid or malformed."),
+    CHANGE_TOKEN_BAD_REQUEST_INVALID(HttpStatus.BAD_REQUEST, "Invalid change token", "The passed change token [%s] is invalid or malformed."),
+    CHANGE_TOKEN_EXPIRED(HttpStatus.GONE, "Change token expired", "The changes made after the passed change token [%s] are not available anymore. All the mock resources must be retrieved again."),
+    CACHE_WARM_UP_ALREADY_RUNNING(HttpStatus.CONFLICT, "Cache warm-up already running", "Another cache warm-up is in progress, started at [%s]."),
     ARCHETYPE_CONFLICT(HttpStatus.CONFLICT, "Archetype already exists", "Another archetype exists for resource [%s %s%s]."),
+    ARCHETYPE_PRECONDITION_FAILED(HttpStatus.PRECONDITION_FAILED, "Archetype changed", "The archetype with id [%s] was changed and does not match the version [%s] required by the request."),
+    ARCHETYPE_CONCURRENT_UPDATE(HttpStatus.CONFLICT, "Concurrent archetype update", "The archetype with id [%s] was concurrently updated by other requests. Retry the operation."),
     ARCHETYPE_NOT_FOUND(HttpStatus.NOT_FOUND, "Archetype not found", "No valid archetype found with id [%s]."),
     ARCHETYPE_BAD_REQUEST_MISSING_URL_PARAMETER(HttpStatus.BAD_REQUEST, "Missing URL parameter", "The request must provide all the path parameters defined by the archetype URL: %s"),
     ARCHETYPE_BAD_REQUEST_MULTIPLE_RESPONSE_WITH_SAME_HTTPCODE(HttpStatus.BAD_REQUEST, "Duplicated responses", "There are multiple responses that refers to the same HTTP status."),
@@ -17,6 +23,7 @@ public enum AppError {
     MOCK_RESOURCE_BAD_REQUEST_INVALID_RESOURCE_ID(HttpStatus.BAD_REQUEST, "Invalid mock resource identifier", "The passed resource id with value [%s] must be equals to the one defined from request ([%s])."),
     MOCK_RESOURCE_BAD_REQUEST_INVALID_RESOURCE_URL(HttpStatus.BAD_REQUEST, "Invalid mock resource URL", "The subsystem or the resource URL passed as input is different from the values defined in the resource to be edited and cannot be changed."),
     MOCK_RESOURCE_BAD_REQUEST_DUPLICATE_RULE_ORDER(HttpStatus.BAD_REQUEST, "Duplicated mock rule cardinal order", "One or more cardinal order value for the passed mock rules are duplicated."),
+    MOCK_RESOURCE_BAD_REQUEST_DUPLICATE_RULE_ID(HttpStatus.BAD_REQUEST, "Duplicated mock rule identifier", "The mock resource with id [%s] already has a mock rule with id [%s]. Use the update of the mock rule for changing it."),
     MOCK_RESOURCE_BAD_REQUEST_DUPLICATE_CONDITION_ORDER(HttpStatus.BAD_REQUEST, "Duplicated mock condition cardinal order", "One or more cardinal order value for the mock condition related to the rules [%s] are duplicated."),
     MOCK_RESOURCE_BAD_REQUEST_INVALID_UNARY_CONDITION(HttpStatus.BAD_REQUEST, "Invalid unary condition", "The unary condition for mock rule [%s] at order [%d] is set with a condition value but it must be set with null value."),
     MOCK_RESOURCE_BAD_REQUEST_INVALID_BINARY_CONDITION(HttpStatus.BAD_REQUEST, "Invalid binary condition", "The binary condition for mock rule [%] at order [%d] is set without a condition value but it must be set with non-null value."),
@@ -24,6 +31,8 @@ public enum AppError {
     MOCK_RESOURCE_BAD_REQUEST_INVALID_CONTENT_TYPE(HttpStatus.BAD_REQUEST, "Invalid content type in condition", "The content type of mock condition for mock rule [%] at order [%d] is set as [%s] but it is incompatible with [%s] content."),
     MOCK_RESOURCE_BAD_REQUEST_UNPARSEABLE_RESPONSE_BODY(HttpStatus.BAD_REQUEST, "Invalid format for response body", "The response body related to the mock rule [%] is not passed as a valid Base64 content."),
     MOCK_RESOURCE_CONFLICT(HttpStatus.CONFLICT, "Mock resource already exists", "Another mock resource exists with id [%s]."),
+    MOCK_RESOURCE_PRECONDITION_FAILED(HttpStatus.PRECONDITION_FAILED, "Mock resource changed", "The mock resource with id [%s] was changed and does not match the version [%s] required by the request."),
+    MOCK_RESOURCE_CONCURRENT_UPDATE(HttpStatus.CONFLICT, "Concurrent mock resource update", "The mock resource with id [%s] was concurrently updated by other requests. Retry the operation."),
     MOCK_RESOURCE_NOT_FOUND(HttpStatus.NOT_FOUND, "Mock resource not found", "No valid mock resource found with id [%s]."),
     MOCK_RULE_NOT_FOUND(HttpStatus.NOT_FOUND, "Mock rule not found", "No valid mock rule with id [%s] was found for mock resource found with id [%s]."),
     MOCK_RESOURCE_GENERATION_FROM_ARCHETYPE_INVALID_HTTPSTATUS(HttpStatus.BAD_REQUEST, "Invalid HTTP status", "No valid response defined in archetype for the HTTP status [%d]."),
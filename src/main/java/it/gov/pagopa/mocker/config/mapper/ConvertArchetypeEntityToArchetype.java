@@ -52,6 +52,7 @@ public class ConvertArchetypeEntityToArchetype implements Converter<ArchetypeEnt
                         .map(ArchetypeParameterEntity::getName)
                         .collect(Collectors.toList()))
                 .responses(responses)
+                .version(source.getVersion())
                 .build();
     }
 }
@@ -92,7 +92,8 @@ public class ConvertMockResourceEntityToMockResource implements Converter<MockRe
                 .httpMethod(source.getHttpMethod())
                 .isActive(source.getIsActive())
                 .tags(new ArrayList<>(source.getTags()))
-                .rules(rules);
+                .rules(rules)
+                .version(source.getVersion());
 
         return builder.build();
     }
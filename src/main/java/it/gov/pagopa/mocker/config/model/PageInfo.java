@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import io.swagger.v3.oas.annotations.media.Schema;
+import it.gov.pagopa.mocker.config.model.enumeration.CountMode;
 import lombok.*;
 
 import javax.validation.constraints.NotNull;
@@ -38,14 +39,20 @@ public class PageInfo {
     Integer itemsFound;
 
     @JsonProperty("total_pages")
-    @Schema(description = "Total number of pages")
+    @Schema(description = "Total number of pages. Not present if the count of the items was not requested")
     @PositiveOrZero
-    @NotNull
     Integer totalPages;
 
     @JsonProperty("total_items")
-    @Schema(description = "Total number of items for all pages")
+    @Schema(description = "Total number of items for all pages. Not present if the count of the items was not requested")
     @PositiveOrZero
-    @NotNull
     Long totalItems;
+
+    @JsonProperty("count_mode")
+    @Schema(description = "The way used for counting the total number of items")
+    CountMode countMode;
+
+    @JsonProperty("next_cursor")
+    @Schema(description = "The cursor to be passed for retrieving the next page, seeking directly after the last item of this page. Not present on the last page")
+    String nextCursor;
 }
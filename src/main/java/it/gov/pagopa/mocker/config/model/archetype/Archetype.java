@@ -1,5 +1,6 @@
 package it.gov.pagopa.mocker.config.model.archetype;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -63,4 +64,8 @@ public class Archetype implements Serializable {
     @NotNull(message = "The list of responses to be assigned to the archetype cannot be null.")
     @Valid
     private List<ArchetypeResponse> responses;
+
+    @JsonIgnore
+    @Schema(hidden = true)
+    private Long version;
 }
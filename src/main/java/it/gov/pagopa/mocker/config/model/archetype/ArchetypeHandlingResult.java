@@ -23,4 +23,24 @@ public class ArchetypeHandlingResult implements Serializable {
 
     @JsonProperty("generated_archetypes")
     private int generatedArchetypes;
+
+    @JsonProperty("updated_archetypes")
+    @Schema(description = "The number of stored archetypes replaced because their operation is changed in the OpenAPI. Defined only in DIFF mode.", example = "3")
+    private Integer updatedArchetypes;
+
+    @JsonProperty("conflicted_archetypes")
+    @Schema(description = "The number of stored archetypes not replaced because they were changed by a concurrent write during the import. Defined only in DIFF mode.", example = "0")
+    private Integer conflictedArchetypes;
+
+    @JsonProperty("deleted_archetypes")
+    @Schema(description = "The number of stored archetypes deleted because their operation is removed from the OpenAPI. Defined only in DIFF mode.", example = "1")
+    private Integer deletedArchetypes;
+
+    @JsonProperty("unchanged_archetypes")
+    @Schema(description = "The number of stored archetypes whose operation is defined in the OpenAPI and left untouched by the import.", example = "120")
+    private Integer unchangedArchetypes;
+
+    @JsonProperty("retained_archetypes")
+    @Schema(description = "The number of stored archetypes whose operation is not defined in the OpenAPI, kept because their deletion was not requested. Defined only in DIFF mode.", example = "2")
+    private Integer retainedArchetypes;
 }
@@ -0,0 +1,56 @@
+package it.gov.pagopa.mocker.config.model.cache;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * The model that contains the progress of the Redis cache warm-up.
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+@Schema(description = "The progress of the Redis cache warm-up.")
+public class CacheWarmUpStatus implements Serializable {
+
+    @JsonProperty("running")
+    @Schema(description = "The flag that define if a warm-up is currently in progress.", example = "true")
+    private boolean running;
+
+    @JsonProperty("started_at")
+    @Schema(description = "The instant on which the last warm-up is started.")
+    private Instant startedAt;
+
+    @JsonProperty("completed_at")
+    @Schema(description = "The instant on which the last warm-up is completed.")
+    private Instant completedAt;
+
+    @JsonProperty("published_resources")
+    @Schema(description = "The number of mock resources published on Redis by the last warm-up.", example = "10000")
+    private long publishedResources;
+
+    @JsonProperty("failed_resources")
+    @Schema(description = "The number of mock resources not published on Redis by the last warm-up due to an error.", example = "0")
+    private long failedResources;
+
+    @JsonProperty("reconciliation")
+    @Schema(description = "The flag that define if the last warm-up also removes the mock resources not stored anymore.", example = "false")
+    private boolean reconciliation;
+
+    @JsonProperty("removed_resources")
+    @Schema(description = "The number of mock resources removed from Redis by the last warm-up, as not stored anymore.", example = "0")
+    private long removedResources;
+
+    @JsonProperty("throughput")
+    @Schema(description = "The number of mock resources published per second by the last warm-up.", example = "25000.0")
+    private double throughput;
+}
@@ -0,0 +1,6 @@
+package it.gov.pagopa.mocker.config.model.enumeration;
+
+public enum ArchetypeImportMode {
+    SKIP_EXISTING,
+    DIFF
+}
@@ -0,0 +1,8 @@
+package it.gov.pagopa.mocker.config.model.enumeration;
+
+public enum CountMode {
+    EXACT,
+    ESTIMATED,
+    CACHED,
+    NONE
+}
@@ -0,0 +1,6 @@
+package it.gov.pagopa.mocker.config.model.enumeration;
+
+public enum RedisValueFormat {
+    JSON,
+    SMILE
+}
@@ -0,0 +1,7 @@
+package it.gov.pagopa.mocker.config.model.enumeration;
+
+public enum SearchMode {
+    REGEX,
+    PREFIX,
+    TEXT
+}
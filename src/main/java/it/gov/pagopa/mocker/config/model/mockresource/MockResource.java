@@ -1,5 +1,6 @@
 package it.gov.pagopa.mocker.config.model.mockresource;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
@@ -71,4 +72,8 @@ public class MockResource implements Serializable {
     @NotNull(message = "The list of rules to be assigned the mock resource cannot be null.")
     @Valid
     private List<MockRule> rules;
+
+    @JsonIgnore
+    @Schema(hidden = true)
+    private Long version;
 }
@@ -0,0 +1,40 @@
+package it.gov.pagopa.mocker.config.model.mockresource;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import it.gov.pagopa.mocker.config.model.enumeration.BulkItemStatus;
+import lombok.*;
+
+import java.io.Serializable;
+
+/**
+ * The model that contains the outcome of the import of a single mock resource in a bulk request.
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+@Schema(description = "The outcome of the import of a single mock resource.")
+public class MockResourceBulkResult implements Serializable {
+
+    @JsonProperty("line")
+    @Schema(description = "The line of the request body on which the mock resource is defined, starting from 1.", example = "1")
+    private long line;
+
+    @JsonProperty("id")
+    @Schema(description = "The unique identifier of the mock resource, if it can be generated from the passed content.", example = "fb5363bcf68f687c9caeddbc221769f6")
+    private String id;
+
+    @JsonProperty("status")
+    @Schema(description = "The outcome of the import of the mock resource.", example = "CREATED")
+    private BulkItemStatus status;
+
+    @JsonProperty("detail")
+    @Schema(description = "The reason why the mock resource was not imported.", example = "Another mock resource exists with id [fb5363bcf68f687c9caeddbc221769f6].")
+    private String detail;
+}
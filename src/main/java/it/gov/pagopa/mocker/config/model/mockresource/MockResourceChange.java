@@ -0,0 +1,43 @@
+package it.gov.pagopa.mocker.config.model.mockresource;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.io.Serializable;
+
+/**
+ * The model that contains a mock resource changed after a change token, or its tombstone if it was deleted.
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+@Schema(description = "A mock resource created, updated or deleted after the passed change token.")
+public class MockResourceChange implements Serializable {
+
+    @JsonProperty("id")
+    @Schema(description = "The unique identifier of the changed mock resource.", example = "fb5363bcf68f687c9caeddbc221769f6")
+    private String id;
+
+    @JsonProperty("sequence")
+    @Schema(description = "The position of the last change of the mock resource in the change log.", example = "1024")
+    private Long sequence;
+
+    @JsonProperty("version")
+    @Schema(description = "The current version of the mock resource. Not present if the mock resource was deleted.", example = "3")
+    private Long version;
+
+    @JsonProperty("deleted")
+    @Schema(description = "The flag that marks the mock resource as deleted. If true, the resource is not present.", example = "false")
+    private boolean deleted;
+
+    @JsonProperty("resource")
+    @Schema(description = "The current content of the mock resource. Not present if the mock resource was deleted.")
+    private MockResource resource;
+}
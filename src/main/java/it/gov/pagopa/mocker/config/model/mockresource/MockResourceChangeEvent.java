@@ -0,0 +1,39 @@
+package it.gov.pagopa.mocker.config.model.mockresource;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import java.io.Serializable;
+
+/**
+ * The model that contains the notification of a change made on a mock resource, pushed to the subscribers.
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+@Schema(description = "The notification of a mock resource created, updated or deleted.")
+public class MockResourceChangeEvent implements Serializable {
+
+    @JsonProperty("id")
+    @Schema(description = "The unique identifier of the changed mock resource.", example = "fb5363bcf68f687c9caeddbc221769f6")
+    private String id;
+
+    @JsonProperty("subsystem")
+    @Schema(description = "The subsystem of the changed mock resource. Not present if the mock resource was deleted, as the deletion is notified to all the subscribers.", example = "apiconfig/api/v1")
+    private String subsystem;
+
+    @JsonProperty("version")
+    @Schema(description = "The version of the mock resource after the change. Not present if the mock resource was deleted.", example = "3")
+    private Long version;
+
+    @JsonProperty("deleted")
+    @Schema(description = "The flag that marks the mock resource as deleted.", example = "false")
+    private boolean deleted;
+}
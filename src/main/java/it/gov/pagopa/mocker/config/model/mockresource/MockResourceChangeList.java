@@ -0,0 +1,39 @@
+package it.gov.pagopa.mocker.config.model.mockresource;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.*;
+
+import javax.validation.constraints.NotNull;
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * The model that contains a page of the mock resources changed after a change token.
+ */
+@Data
+@Builder(toBuilder = true)
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+@Schema(description = "The page of mock resources changed after the passed change token.")
+public class MockResourceChangeList implements Serializable {
+
+    @JsonProperty("changes")
+    @NotNull
+    @Schema(description = "The changed mock resources, each one reported once in the order of its last change.")
+    private List<MockResourceChange> changes;
+
+    @JsonProperty("next_token")
+    @NotNull
+    @Schema(description = "The change token to be passed for retrieving the changes made after this page.", example = "1024")
+    private String nextToken;
+
+    @JsonProperty("has_more")
+    @Schema(description = "The flag that marks if other changes can be retrieved immediately with the next token.", example = "false")
+    private boolean hasMore;
+}
@@ -2,6 +2,7 @@ package it.gov.pagopa.mocker.config.repository;
 
 import it.gov.pagopa.mocker.config.entity.ArchetypeEntity;
 import it.gov.pagopa.mocker.config.model.enumeration.HttpMethod;
+import it.gov.pagopa.mocker.config.repository.specification.ArchetypeCriteriaRepository;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
@@ -9,7 +10,7 @@ import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface ArchetypeRepository extends MongoRepository<ArchetypeEntity, String> {
+public interface ArchetypeRepository extends MongoRepository<ArchetypeEntity, String>, ArchetypeCriteriaRepository {
 
     @Override
     Optional<ArchetypeEntity> findById(String archetypeId);
@@ -1,13 +1,14 @@
 package it.gov.pagopa.mocker.config.repository;
 
 import it.gov.pagopa.mocker.config.entity.ArchetypeSchemaEntity;
+import it.gov.pagopa.mocker.config.repository.specification.ArchetypeSchemaCriteriaRepository;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
 
 @Repository
-public interface ArchetypeSchemaRepository extends MongoRepository<ArchetypeSchemaEntity, String> {
+public interface ArchetypeSchemaRepository extends MongoRepository<ArchetypeSchemaEntity, String>, ArchetypeSchemaCriteriaRepository {
 
     Optional<ArchetypeSchemaEntity> findByName(String name);
 }
@@ -0,0 +1,20 @@
+package it.gov.pagopa.mocker.config.repository;
+
+import it.gov.pagopa.mocker.config.entity.MockResourceChangeEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface MockResourceChangeRepository extends MongoRepository<MockResourceChangeEntity, Long> {
+
+    List<MockResourceChangeEntity> findByIdGreaterThanOrderByIdAsc(Long id, Pageable pageable);
+
+    Optional<MockResourceChangeEntity> findFirstByOrderByIdAsc();
+
+    Optional<MockResourceChangeEntity> findFirstByChangedAtLessThanOrderByIdDesc(Instant changedAt);
+}
@@ -5,10 +5,13 @@ import it.gov.pagopa.mocker.config.repository.specification.MockResourceCriteria
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface MockResourceRepository extends MongoRepository<MockResourceEntity, String>, MockResourceCriteriaRepository {
 
     Optional<MockResourceEntity> findById(String id);
+
+    List<MockResourceEntity> findAllById(Iterable<String> ids);
 }
\ No newline at end of file
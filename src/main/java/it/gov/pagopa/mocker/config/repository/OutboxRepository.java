@@ -0,0 +1,10 @@
+package it.gov.pagopa.mocker.config.repository;
+
+import it.gov.pagopa.mocker.config.entity.OutboxEntity;
+import it.gov.pagopa.mocker.config.repository.specification.OutboxCriteriaRepository;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface OutboxRepository extends MongoRepository<OutboxEntity, String>, OutboxCriteriaRepository {
+}
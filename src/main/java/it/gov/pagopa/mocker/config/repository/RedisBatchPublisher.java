@@ -0,0 +1,253 @@
+package it.gov.pagopa.mocker.config.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes keys on Redis through bounded queues, flushed in pipelined batches by a fixed number of workers.
+ * A key is always assigned to the same worker, so the writes on the same key are applied in order, and a
+ * write on a key still waiting in the queue replaces the previous one instead of being queued again.
+ * Each write returns a future completed when the key is written, so the caller can wait for the
+ * propagation before acknowledging it. When the queue of a worker is full the write is rejected,
+ * completing its future exceptionally. On shutdown the queued writes are drained before stopping the workers.
+ */
+@Component
+@Slf4j
+public class RedisBatchPublisher {
+
+    private static final long POLL_INTERVAL_MS = 200;
+
+    @Autowired
+    private RedisRepository redisRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${redis.publisher.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${redis.publisher.workers:2}")
+    private int workers;
+
+    @Value("${redis.publisher.batch-size:200}")
+    private int batchSize;
+
+    @Value("${redis.publisher.enqueue-timeout:50}")
+    private long enqueueTimeout;
+
+    @Value("${redis.publisher.shutdown-timeout:30000}")
+    private long shutdownTimeout;
+
+    @Value("${redis.publisher.await-timeout:30000}")
+    private long awaitTimeout;
+
+    private Partition[] partitions;
+
+    private ExecutorService executor;
+
+    private volatile boolean stopping;
+
+    private Counter enqueuedCounter;
+
+    private Counter coalescedCounter;
+
+    private Counter rejectedCounter;
+
+    private Counter publishedCounter;
+
+    private Counter failedCounter;
+
+    private Timer flushTimer;
+
+    private DistributionSummary batchSizeSummary;
+
+    @PostConstruct
+    public void init() {
+        partitions = new Partition[workers];
+        for (int index = 0; index < workers; index++) {
+            partitions[index] = new Partition(Math.max(1, queueCapacity / workers));
+        }
+        AtomicInteger threadCounter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(workers, runnable -> new Thread(runnable, "redis-publisher-" + threadCounter.incrementAndGet()));
+        for (Partition partition : partitions) {
+            executor.submit(() -> runWorker(partition));
+        }
+
+        enqueuedCounter = Counter.builder("mocker.redis.publisher.enqueued").description("Writes accepted by the Redis publisher").register(meterRegistry);
+        coalescedCounter = Counter.builder("mocker.redis.publisher.coalesced").description("Writes replacing a queued write on the same key").register(meterRegistry);
+        rejectedCounter = Counter.builder("mocker.redis.publisher.rejected").description("Writes rejected because the queue was full").register(meterRegistry);
+        publishedCounter = Counter.builder("mocker.redis.publisher.published").description("Writes applied on Redis").register(meterRegistry);
+        failedCounter = Counter.builder("mocker.redis.publisher.failed").description("Writes not applied on Redis because of an error").register(meterRegistry);
+        flushTimer = Timer.builder("mocker.redis.publisher.flush").description("Time taken to write a pipelined batch on Redis").register(meterRegistry);
+        batchSizeSummary = DistributionSummary.builder("mocker.redis.publisher.batch.size").description("Writes sent in a pipelined batch").register(meterRegistry);
+        Gauge.builder("mocker.redis.publisher.queue.size", this, RedisBatchPublisher::getQueueSize).description("Writes waiting to be sent to Redis").register(meterRegistry);
+    }
+
+    /**
+     * Queues all the passed writes, returning a future completed when all of them are applied on Redis,
+     * or completed exceptionally if any of them was rejected or failed.
+     */
+    public CompletableFuture<Void> publishAll(Collection<RedisRepository.RedisWrite> writes) {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[writes.size()];
+        int index = 0;
+        for (RedisRepository.RedisWrite write : writes) {
+            futures[index++] = enqueue(write);
+        }
+        return CompletableFuture.allOf(futures);
+    }
+
+    /**
+     * Queues all the passed writes and waits until all of them are applied on Redis, throwing an
+     * exception if any of them was rejected, failed or not applied in the await timeout.
+     */
+    public void publishAllAndWait(Collection<RedisRepository.RedisWrite> writes) {
+        try {
+            publishAll(writes).get(awaitTimeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the writes on Redis", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(String.format("The write of [%d] keys on Redis failed", writes.size()), e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException(String.format("The write of [%d] keys on Redis was not completed in [%d] ms", writes.size(), awaitTimeout), e);
+        }
+    }
+
+    public int getQueueSize() {
+        int size = 0;
+        for (Partition partition : partitions) {
+            size += partition.queue.size();
+        }
+        return size;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // the workers stop only after having flushed all the writes already queued
+        stopping = true;
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(shutdownTimeout, TimeUnit.MILLISECONDS)) {
+                log.warn(String.format("The Redis publisher is not drained in the expected time, [%d] writes are discarded.", getQueueSize()));
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            executor.shutdownNow();
+        }
+
+        // the callers waiting for the discarded writes must not wait forever
+        for (Partition partition : partitions) {
+            partition.pending.values().forEach(write -> write.done().completeExceptionally(new CancellationException("The Redis publisher is stopped")));
+        }
+    }
+
+    private CompletableFuture<Void> enqueue(RedisRepository.RedisWrite write) {
+        if (stopping) {
+            rejectedCounter.increment();
+            return CompletableFuture.failedFuture(new RejectedExecutionException("The Redis publisher is stopped"));
+        }
+        String key = write.key();
+        Partition partition = partitions[Math.floorMod(key.hashCode(), partitions.length)];
+
+        // if the key is already queued, the write will be picked up by the queued entry, sharing its completion
+        PendingWrite[] previous = new PendingWrite[1];
+        PendingWrite pendingWrite = partition.pending.compute(key, (pendingKey, existing) -> {
+            previous[0] = existing;
+            return new PendingWrite(write, existing != null ? existing.done() : new CompletableFuture<>());
+        });
+        if (previous[0] != null) {
+            coalescedCounter.increment();
+            return pendingWrite.done();
+        }
+        try {
+            if (partition.queue.offer(key, enqueueTimeout, TimeUnit.MILLISECONDS)) {
+                enqueuedCounter.increment();
+                return pendingWrite.done();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // rejecting also the writes coalesced in the meantime, as they share the same entry
+        PendingWrite rejected = partition.pending.remove(key);
+        rejectedCounter.increment();
+        CompletableFuture<Void> done = rejected != null ? rejected.done() : pendingWrite.done();
+        done.completeExceptionally(new RejectedExecutionException(String.format("The write of the key [%s] on Redis was rejected, as the queue is full", key)));
+        return done;
+    }
+
+    private void runWorker(Partition partition) {
+        List<String> keys = new ArrayList<>(batchSize);
+        while (true) {
+            try {
+                String key = partition.queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+                if (key == null) {
+                    if (stopping) {
+                        return;
+                    }
+                    continue;
+                }
+                keys.add(key);
+                partition.queue.drainTo(keys, batchSize - 1);
+                flush(partition, keys);
+                keys.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void flush(Partition partition, List<String> keys) {
+        List<PendingWrite> pendingWrites = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            PendingWrite pendingWrite = partition.pending.remove(key);
+            if (pendingWrite != null) {
+                pendingWrites.add(pendingWrite);
+            }
+        }
+        if (pendingWrites.isEmpty()) {
+            return;
+        }
+        batchSizeSummary.record(pendingWrites.size());
+        try {
+            flushTimer.record(() -> redisRepository.applyAll(pendingWrites.stream().map(PendingWrite::write).toList()));
+            publishedCounter.increment(pendingWrites.size());
+            pendingWrites.forEach(pendingWrite -> pendingWrite.done().complete(null));
+        } catch (Exception e) {
+            log.error(String.format("An error occurred while trying to write a batch of [%d] keys on Redis. ", pendingWrites.size()), e);
+            failedCounter.increment(pendingWrites.size());
+            pendingWrites.forEach(pendingWrite -> pendingWrite.done().completeExceptionally(e));
+        }
+    }
+
+    private record PendingWrite(RedisRepository.RedisWrite write, CompletableFuture<Void> done) {
+    }
+
+    private static final class Partition {
+
+        private final BlockingQueue<String> queue;
+
+        private final ConcurrentHashMap<String, PendingWrite> pending = new ConcurrentHashMap<>();
+
+        private Partition(int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+    }
+}
@@ -1,13 +1,23 @@
 package it.gov.pagopa.mocker.config.repository;
 
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisTemplate;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -23,6 +33,75 @@ public class RedisRepository {
         redisTemplateObj.opsForValue().set(key, value, Duration.ofMinutes(ttl));
     }
 
+    /**
+     * Saves all the passed entries without expiration, sending the commands in a single pipeline, avoiding a
+     * round trip for each key.
+     */
+    @SuppressWarnings("unchecked")
+    public void saveAll(Map<String, Object> entries) {
+        RedisSerializer<String> keySerializer = (RedisSerializer<String>) redisTemplateObj.getKeySerializer();
+        RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) redisTemplateObj.getValueSerializer();
+        redisTemplateObj.executePipelined((RedisCallback<Object>) connection -> {
+            for (Map.Entry<String, Object> entry : entries.entrySet()) {
+                connection.stringCommands().set(keySerializer.serialize(entry.getKey()), valueSerializer.serialize(entry.getValue()), Expiration.persistent(), RedisStringCommands.SetOption.upsert());
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Applies all the passed writes sending the commands in a single pipeline. The keys are saved without
+     * expiration, and a write without value removes the key.
+     */
+    @SuppressWarnings("unchecked")
+    public void applyAll(Collection<RedisWrite> writes) {
+        RedisSerializer<String> keySerializer = (RedisSerializer<String>) redisTemplateObj.getKeySerializer();
+        RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) redisTemplateObj.getValueSerializer();
+        redisTemplateObj.executePipelined((RedisCallback<Object>) connection -> {
+            for (RedisWrite write : writes) {
+                byte[] key = keySerializer.serialize(write.key());
+                if (write.value() == null) {
+                    connection.keyCommands().del(key);
+                } else {
+                    connection.stringCommands().set(key, valueSerializer.serialize(write.value()), Expiration.persistent(), RedisStringCommands.SetOption.upsert());
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Scans incrementally the keys matching the passed pattern, passing them to the consumer in batches of at
+     * most the passed size. A key can be passed more than once if the keyspace is rehashed during the scan.
+     */
+    @SuppressWarnings("unchecked")
+    public void scanKeys(String pattern, int batchSize, Consumer<List<String>> consumer) {
+        RedisSerializer<String> keySerializer = (RedisSerializer<String>) redisTemplateObj.getKeySerializer();
+        redisTemplateObj.execute((RedisCallback<Object>) connection -> {
+            Cursor<byte[]> cursor = connection.keyCommands().scan(ScanOptions.scanOptions().match(pattern).count(batchSize).build());
+            try {
+                List<String> keys = new ArrayList<>(batchSize);
+                while (cursor.hasNext()) {
+                    keys.add(keySerializer.deserialize(cursor.next()));
+                    if (keys.size() == batchSize) {
+                        consumer.accept(keys);
+                        keys = new ArrayList<>(batchSize);
+                    }
+                }
+                if (!keys.isEmpty()) {
+                    consumer.accept(keys);
+                }
+            } finally {
+                try {
+                    cursor.close();
+                } catch (Exception e) {
+                    log.warn("An error occurred while trying to close a scan cursor on Redis. ", e);
+                }
+            }
+            return null;
+        });
+    }
+
     public Object get(String key) {
         return redisTemplateObj.opsForValue().get(key);
     }
@@ -37,17 +116,6 @@ public class RedisRepository {
     public void remove(String key) {
         redisTemplateObj.delete(key);
     }
-    @Async
-    public void pushToRedisAsync(String key, Object object) {
-        try {
-            log.info("saving {} on redis", key);
-            save(key, object, 1440);
-            log.info("saved {} on redis", key);
-        } catch (Exception e) {
-            log.error("could not save " + key + "on redis", e);
-        }
-    }
-
     public String getStringByKeyId(String keyId) {
         Object v = null;
         try {
@@ -75,4 +143,7 @@ public class RedisRepository {
             return Boolean.FALSE;
         }
     }
-}
\ No newline at end of file
+
+    public record RedisWrite(String key, Object value) {
+    }
+}
@@ -0,0 +1,9 @@
+package it.gov.pagopa.mocker.config.repository;
+
+import it.gov.pagopa.mocker.config.entity.SyncStateEntity;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface SyncStateRepository extends MongoRepository<SyncStateEntity, String> {
+}
@@ -0,0 +1,20 @@
+package it.gov.pagopa.mocker.config.repository.callback;
+
+import it.gov.pagopa.mocker.config.entity.MockResourceEntity;
+import it.gov.pagopa.mocker.config.util.Utility;
+import org.springframework.data.mongodb.core.mapping.event.BeforeConvertCallback;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the lowercase copy of the mock resource name, used by the prefix search, aligned with
+ * the name on each write of the entity.
+ */
+@Component
+public class MockResourceBeforeConvertCallback implements BeforeConvertCallback<MockResourceEntity> {
+
+    @Override
+    public MockResourceEntity onBeforeConvert(MockResourceEntity entity, String collection) {
+        entity.setNormalizedName(Utility.normalize(entity.getName()));
+        return entity;
+    }
+}
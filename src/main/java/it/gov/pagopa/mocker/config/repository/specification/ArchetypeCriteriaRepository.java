@@ -0,0 +1,39 @@
+package it.gov.pagopa.mocker.config.repository.specification;
+
+import it.gov.pagopa.mocker.config.entity.ArchetypeEntity;
+import it.gov.pagopa.mocker.config.util.PageCursor;
+import org.springframework.data.domain.Pageable;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface ArchetypeCriteriaRepository {
+
+    PagedResult<ArchetypeEntity> findAll(Pageable pageable, PageCursor cursor);
+
+    /**
+     * Replaces the whole archetype, only if the stored one is still at the expected version.
+     * Returns the replaced archetype, or null if the archetype was changed in the meantime.
+     */
+    ArchetypeEntity replace(ArchetypeEntity archetypeEntity, Long expectedVersion);
+
+    /**
+     * Finds the archetypes of the passed subsystem, reading only their resource URL and HTTP method.
+     * The query is entirely covered by the resource index.
+     */
+    List<ArchetypeEntity> findResourcesBySubsystemUrl(String subsystemUrl);
+
+    /**
+     * Finds the archetypes of the passed subsystem, reading only the data needed for comparing them
+     * with a new version of the OpenAPI they were extracted from.
+     */
+    List<ArchetypeEntity> findFingerprintsBySubsystemUrl(String subsystemUrl);
+
+    /**
+     * Applies all the changes with a single unordered bulk write. The insertions of archetypes whose resource
+     * already exists are skipped. The replacements are applied only if the stored archetype is still at the
+     * version carried by the replacement, which is incremented by the write: the ones not applied are
+     * reported as conflicted.
+     */
+    BulkWriteSummary applyChanges(List<ArchetypeEntity> insertions, List<ArchetypeEntity> replacements, Collection<String> deletionIds);
+}
@@ -0,0 +1,86 @@
+package it.gov.pagopa.mocker.config.repository.specification;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.bulk.BulkWriteResult;
+import it.gov.pagopa.mocker.config.entity.ArchetypeEntity;
+import it.gov.pagopa.mocker.config.model.enumeration.CountMode;
+import it.gov.pagopa.mocker.config.util.PageCursor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public class ArchetypeCriteriaRepositoryImpl implements ArchetypeCriteriaRepository {
+
+
+    private final MongoTemplate mongoTemplate;
+
+    public ArchetypeCriteriaRepositoryImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public PagedResult<ArchetypeEntity> findAll(Pageable pageable, PageCursor cursor) {
+        return KeysetPagination.find(mongoTemplate, new Query(), pageable, cursor, ArchetypeEntity.class, ArchetypeEntity::getId, ArchetypeEntity::getName,
+                CountMode.EXACT, query -> mongoTemplate.count(query, ArchetypeEntity.class));
+    }
+
+    @Override
+    public ArchetypeEntity replace(ArchetypeEntity archetypeEntity, Long expectedVersion) {
+        // a null version matches also the archetypes stored before the versioning was introduced
+        Query query = Query.query(Criteria.where("id").is(archetypeEntity.getId()).and("version").is(expectedVersion));
+        return mongoTemplate.findAndReplace(query, archetypeEntity, FindAndReplaceOptions.options().returnNew());
+    }
+
+    @Override
+    public List<ArchetypeEntity> findResourcesBySubsystemUrl(String subsystemUrl) {
+        Query query = Query.query(Criteria.where("subsystemUrl").is(subsystemUrl));
+        query.fields().include("resourceUrl").include("httpMethod").exclude("id");
+        return mongoTemplate.find(query, ArchetypeEntity.class);
+    }
+
+    @Override
+    public List<ArchetypeEntity> findFingerprintsBySubsystemUrl(String subsystemUrl) {
+        Query query = Query.query(Criteria.where("subsystemUrl").is(subsystemUrl));
+        query.fields().include("resourceUrl").include("httpMethod").include("fingerprint").include("version");
+        return mongoTemplate.find(query, ArchetypeEntity.class);
+    }
+
+    @Override
+    public BulkWriteSummary applyChanges(List<ArchetypeEntity> insertions, List<ArchetypeEntity> replacements, Collection<String> deletionIds) {
+        if (insertions.isEmpty() && replacements.isEmpty() && deletionIds.isEmpty()) {
+            return new BulkWriteSummary(0, 0, 0, 0);
+        }
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ArchetypeEntity.class);
+        bulkOperations.insert(insertions);
+        for (ArchetypeEntity replacement : replacements) {
+            // a null version matches also the archetypes stored before the versioning was introduced
+            Long expectedVersion = replacement.getVersion();
+            replacement.setVersion(Optional.ofNullable(expectedVersion).orElse(0L) + 1);
+            bulkOperations.replaceOne(Query.query(Criteria.where("id").is(replacement.getId()).and("version").is(expectedVersion)), replacement);
+        }
+        if (!deletionIds.isEmpty()) {
+            bulkOperations.remove(Query.query(Criteria.where("id").in(deletionIds)));
+        }
+        BulkWriteResult result;
+        try {
+            result = bulkOperations.execute();
+        } catch (BulkOperationException e) {
+            // the archetypes inserted in the meantime by a concurrent import are rejected by the unique resource index
+            boolean onlyDuplicates = e.getErrors().stream().allMatch(error -> ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY);
+            if (!onlyDuplicates) {
+                throw e;
+            }
+            result = e.getResult();
+        }
+        // the replacements not matched lost the race with a concurrent write, which already changed the version
+        return new BulkWriteSummary(result.getInsertedCount(), result.getModifiedCount(), result.getDeletedCount(), replacements.size() - result.getMatchedCount());
+    }
+}
@@ -0,0 +1,14 @@
+package it.gov.pagopa.mocker.config.repository.specification;
+
+import it.gov.pagopa.mocker.config.entity.ArchetypeSchemaEntity;
+
+import java.util.Collection;
+
+public interface ArchetypeSchemaCriteriaRepository {
+
+    /**
+     * Stores all the schemas with a single unordered bulk write, inserting only the ones whose content
+     * is not already stored for the same subsystem. Returns the number of inserted schemas.
+     */
+    int upsertAll(Collection<ArchetypeSchemaEntity> archetypeSchemaEntities);
+}
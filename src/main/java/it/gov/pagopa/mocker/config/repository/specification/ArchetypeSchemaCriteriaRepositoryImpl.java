@@ -0,0 +1,48 @@
+package it.gov.pagopa.mocker.config.repository.specification;
+
+import com.mongodb.ErrorCategory;
+import it.gov.pagopa.mocker.config.entity.ArchetypeSchemaEntity;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Collection;
+
+public class ArchetypeSchemaCriteriaRepositoryImpl implements ArchetypeSchemaCriteriaRepository {
+
+    private final MongoTemplate mongoTemplate;
+
+    public ArchetypeSchemaCriteriaRepositoryImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public int upsertAll(Collection<ArchetypeSchemaEntity> archetypeSchemaEntities) {
+        if (archetypeSchemaEntities.isEmpty()) {
+            return 0;
+        }
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ArchetypeSchemaEntity.class);
+        for (ArchetypeSchemaEntity archetypeSchemaEntity : archetypeSchemaEntities) {
+            // the schemas already stored are left untouched, so a re-import does not write anything
+            Query query = Query.query(Criteria.where("subsystem").is(archetypeSchemaEntity.getSubsystem()).and("hash").is(archetypeSchemaEntity.getHash()));
+            Update update = new Update()
+                    .setOnInsert("id", archetypeSchemaEntity.getId())
+                    .setOnInsert("name", archetypeSchemaEntity.getName())
+                    .setOnInsert("content", archetypeSchemaEntity.getContent());
+            bulkOperations.upsert(query, update);
+        }
+        try {
+            return bulkOperations.execute().getUpserts().size();
+        } catch (BulkOperationException e) {
+            // two concurrent upserts of the same schema can both try the insert: the loser is rejected by the unique index
+            boolean onlyDuplicates = e.getErrors().stream().allMatch(error -> ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY);
+            if (!onlyDuplicates) {
+                throw e;
+            }
+            return e.getResult().getUpserts().size();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package it.gov.pagopa.mocker.config.repository.specification;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * The number of documents changed by a bulk write, by kind of change, and the number of replacements
+ * not applied because the stored document was changed by a concurrent write.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+public class BulkWriteSummary {
+
+    private int inserted;
+
+    private int updated;
+
+    private int deleted;
+
+    private int conflicted;
+}
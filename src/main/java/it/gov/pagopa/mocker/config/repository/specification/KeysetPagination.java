@@ -0,0 +1,78 @@
+package it.gov.pagopa.mocker.config.repository.specification;
+
+import it.gov.pagopa.mocker.config.model.enumeration.CountMode;
+import it.gov.pagopa.mocker.config.util.PageCursor;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Paginates the documents sorted by name and id. Starting from a cursor, the page is retrieved
+ * seeking on the sort key of the last element of the previous page, so the cost does not depend
+ * on the page depth as it happens skipping the previous elements.
+ */
+public class KeysetPagination {
+
+    public static final Sort SORT = Sort.by(Sort.Direction.ASC, "name").and(Sort.by(Sort.Direction.ASC, "id"));
+
+    private KeysetPagination() {
+    }
+
+    /**
+     * Retrieves the page of the elements matching the query. The count of all matching elements
+     * is computed by the passed function, before the query is restricted to the requested page.
+     */
+    public static <T> PagedResult<T> find(MongoTemplate mongoTemplate, Query query, Pageable pageable, PageCursor cursor,
+                                          Class<T> entityClass, Function<T, String> idExtractor, Function<T, String> nameExtractor,
+                                          CountMode countMode, Function<Query, Long> counter) {
+        query.with(SORT);
+        Long count = counter.apply(query);
+
+        int limit = pageable.getPageSize();
+        int page;
+        if (cursor != null) {
+            query.addCriteria(seekAfter(cursor));
+            page = cursor.getPage();
+        } else {
+            query.skip(pageable.getOffset());
+            page = pageable.getPageNumber();
+        }
+        // retrieving one more element, only to know if another page exists
+        query.limit(limit + 1);
+        List<T> elements = mongoTemplate.find(query, entityClass);
+
+        String nextCursor = null;
+        if (elements.size() > limit) {
+            elements = elements.subList(0, limit);
+            T last = elements.get(limit - 1);
+            nextCursor = new PageCursor(page + 1, idExtractor.apply(last), nameExtractor.apply(last)).encode();
+        }
+        return PagedResult.<T>builder()
+                .content(elements)
+                .page(page)
+                .limit(limit)
+                .totalItems(count)
+                .countMode(countMode)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    private static Criteria seekAfter(PageCursor cursor) {
+        // null names are sorted before any string, but cannot be compared with $gt
+        if (cursor.getName() == null) {
+            return new Criteria().orOperator(
+                    Criteria.where("name").is(null).and("id").gt(cursor.getId()),
+                    Criteria.where("name").ne(null)
+            );
+        }
+        return new Criteria().orOperator(
+                Criteria.where("name").gt(cursor.getName()),
+                Criteria.where("name").is(cursor.getName()).and("id").gt(cursor.getId())
+        );
+    }
+}
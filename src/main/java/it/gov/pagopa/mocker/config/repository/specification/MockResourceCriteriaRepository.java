@@ -1,10 +1,50 @@
 package it.gov.pagopa.mocker.config.repository.specification;
 
 import it.gov.pagopa.mocker.config.entity.MockResourceEntity;
-import org.springframework.data.domain.Page;
+import it.gov.pagopa.mocker.config.entity.MockRuleEntity;
+import it.gov.pagopa.mocker.config.model.enumeration.CountMode;
+import it.gov.pagopa.mocker.config.util.PageCursor;
 import org.springframework.data.domain.Pageable;
 
+import java.util.Optional;
+
 public interface MockResourceCriteriaRepository {
 
-    Page<MockResourceEntity> findAll(Pageable pageable, String name, String tag);
+    /**
+     * Retrieves a page of mock resources, reading only the fields needed for a summary of them.
+     * The rules of the retrieved mock resources are not loaded.
+     */
+    PagedResult<MockResourceEntity> findAll(Pageable pageable, PageCursor cursor, String name, String tag, CountMode countMode);
+
+    /**
+     * Retrieves the version of a mock resource and the identifier and order of its rules, the only
+     * data needed for validating a change on a single rule.
+     */
+    Optional<MockResourceEntity> findRulesSummaryById(String id);
+
+    /**
+     * Adds the rule to the mock resource, only if the resource is still at the expected version.
+     * Returns the updated mock resource, or null if the resource was changed in the meantime.
+     */
+    MockResourceEntity pushRule(String id, Long expectedVersion, MockRuleEntity mockRuleEntity);
+
+    /**
+     * Replaces the rule with the same identifier in the mock resource, only if the resource is still
+     * at the expected version and contains the rule.
+     * Returns the updated mock resource, or null if the resource was changed in the meantime.
+     */
+    MockResourceEntity replaceRule(String id, Long expectedVersion, MockRuleEntity mockRuleEntity);
+
+    /**
+     * Removes the rule from the mock resource, only if the resource is still at the expected version
+     * and contains the rule.
+     * Returns the updated mock resource, or null if the resource was changed in the meantime.
+     */
+    MockResourceEntity pullRule(String id, Long expectedVersion, String ruleId);
+
+    /**
+     * Replaces the whole mock resource, only if the stored one is still at the expected version.
+     * Returns the replaced mock resource, or null if the resource was changed in the meantime.
+     */
+    MockResourceEntity replace(MockResourceEntity mockResourceEntity, Long expectedVersion);
 }
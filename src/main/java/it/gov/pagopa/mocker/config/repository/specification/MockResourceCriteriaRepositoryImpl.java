@@ -1,40 +1,118 @@
 package it.gov.pagopa.mocker.config.repository.specification;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import it.gov.pagopa.mocker.config.entity.MockResourceEntity;
+import it.gov.pagopa.mocker.config.entity.MockRuleEntity;
+import it.gov.pagopa.mocker.config.model.enumeration.CountMode;
+import it.gov.pagopa.mocker.config.repository.specification.search.MockResourceSearchEngine;
+import it.gov.pagopa.mocker.config.util.PageCursor;
 import org.apache.commons.lang3.StringUtils;
-import org.springframework.data.domain.Page;
-import org.springframework.data.domain.PageImpl;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.query.Criteria;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 
-import java.util.List;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
 
 public class MockResourceCriteriaRepositoryImpl implements MockResourceCriteriaRepository {
 
+    // the fields needed by the reduced mock resource, so the rules are never read for the listing
+    private static final String[] SUMMARY_FIELDS = {"name", "subsystemUrl", "resourceUrl", "httpMethod", "specialHeaders", "isActive", "tags"};
 
     private final MongoTemplate mongoTemplate;
 
-    public MockResourceCriteriaRepositoryImpl(MongoTemplate mongoTemplate) {
+    private final MockResourceSearchEngine searchEngine;
+
+    private final Cache<String, Long> countCache;
+
+    public MockResourceCriteriaRepositoryImpl(MongoTemplate mongoTemplate, MockResourceSearchEngine searchEngine,
+                                              @Value("${pagination.count-cache.ttl:30}") long countCacheTtl) {
         this.mongoTemplate = mongoTemplate;
+        this.searchEngine = searchEngine;
+        this.countCache = Caffeine.newBuilder()
+                .maximumSize(1000)
+                .expireAfterWrite(Duration.ofSeconds(countCacheTtl))
+                .build();
     }
 
     @Override
-    public Page<MockResourceEntity> findAll(Pageable pageable, String name, String tag) {
-        Query query = new Query().with(Sort.by(Sort.Direction.ASC, "name"));
+    public PagedResult<MockResourceEntity> findAll(Pageable pageable, PageCursor cursor, String name, String tag, CountMode countMode) {
+        Query query = new Query();
+        query.fields().include(SUMMARY_FIELDS);
         if (StringUtils.isNotEmpty(name)) {
-            query.addCriteria(Criteria.where("name").regex(".*" + name + ".*", "i"));
+            query.addCriteria(searchEngine.getNameCriteria(name));
         }
         if (StringUtils.isNotEmpty(tag)) {
-            query.addCriteria(Criteria.where("tags").regex("(" + tag + ")", "i"));
+            query.addCriteria(searchEngine.getTagCriteria(tag));
+        }
+        // the estimation is read from the collection metadata, so it cannot be applied on filtered queries
+        CountMode usedCountMode = countMode;
+        if (CountMode.ESTIMATED.equals(countMode) && !query.getQueryObject().isEmpty()) {
+            usedCountMode = CountMode.CACHED;
         }
-        // get count of all elements, before paginating data
-        long count = mongoTemplate.count(query, MockResourceEntity.class);
-        // get paginated elements
-        query.with(pageable);
-        List<MockResourceEntity> list = mongoTemplate.find(query, MockResourceEntity.class);
-        return new PageImpl<>(list, pageable, count);
+        return KeysetPagination.find(mongoTemplate, query, pageable, cursor, MockResourceEntity.class, MockResourceEntity::getId, MockResourceEntity::getName,
+                usedCountMode, getCounter(usedCountMode));
+    }
+
+    private Function<Query, Long> getCounter(CountMode countMode) {
+        return switch (countMode) {
+            case EXACT -> query -> mongoTemplate.count(query, MockResourceEntity.class);
+            case ESTIMATED -> query -> mongoTemplate.estimatedCount(MockResourceEntity.class);
+            case CACHED -> query -> countCache.get(query.getQueryObject().toJson(), key -> mongoTemplate.count(query, MockResourceEntity.class));
+            case NONE -> query -> null;
+        };
+    }
+
+    @Override
+    public Optional<MockResourceEntity> findRulesSummaryById(String id) {
+        Query query = Query.query(Criteria.where("id").is(id));
+        query.fields().include("version", "rules.id", "rules.order");
+        return Optional.ofNullable(mongoTemplate.findOne(query, MockResourceEntity.class));
+    }
+
+    @Override
+    public MockResourceEntity pushRule(String id, Long expectedVersion, MockRuleEntity mockRuleEntity) {
+        Update update = new Update().inc("version", 1);
+        update.push("rules").sort(Sort.by(Sort.Direction.ASC, "order")).each(mockRuleEntity);
+        return mongoTemplate.findAndModify(getVersionedQuery(id, expectedVersion), update, FindAndModifyOptions.options().returnNew(true), MockResourceEntity.class);
+    }
+
+    @Override
+    public MockResourceEntity replaceRule(String id, Long expectedVersion, MockRuleEntity mockRuleEntity) {
+        Query query = getVersionedQuery(id, expectedVersion).addCriteria(Criteria.where("rules._id").is(mockRuleEntity.getId()));
+        // the rules are stored with the identifier mapped as _id, and the array filters are not mapped on the entity
+        Update update = new Update()
+                .set("rules.$[rule]", mockRuleEntity)
+                .inc("version", 1)
+                .filterArray(Criteria.where("rule._id").is(mockRuleEntity.getId()));
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), MockResourceEntity.class);
+    }
+
+    @Override
+    public MockResourceEntity pullRule(String id, Long expectedVersion, String ruleId) {
+        Query query = getVersionedQuery(id, expectedVersion).addCriteria(Criteria.where("rules._id").is(ruleId));
+        Update update = new Update()
+                .pull("rules", new Document("_id", ruleId))
+                .inc("version", 1);
+        return mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true), MockResourceEntity.class);
+    }
+
+    @Override
+    public MockResourceEntity replace(MockResourceEntity mockResourceEntity, Long expectedVersion) {
+        return mongoTemplate.findAndReplace(getVersionedQuery(mockResourceEntity.getId(), expectedVersion), mockResourceEntity, FindAndReplaceOptions.options().returnNew());
+    }
+
+    private Query getVersionedQuery(String id, Long expectedVersion) {
+        // a null version matches also the resources stored before the versioning was introduced
+        return Query.query(Criteria.where("id").is(id).and("version").is(expectedVersion));
     }
 }
@@ -0,0 +1,35 @@
+package it.gov.pagopa.mocker.config.repository.specification;
+
+import it.gov.pagopa.mocker.config.entity.OutboxEntity;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public interface OutboxCriteriaRepository {
+
+    /**
+     * Registers a change on each of the passed mock resources with a single unordered bulk write,
+     * creating the record if missing and increasing its revision otherwise.
+     */
+    void registerChanges(Collection<String> ids, boolean ready);
+
+    /**
+     * Claims with the passed claim, until the passed lease expiration, the oldest records ready to be relayed
+     * and the ones not ready but not updated after the passed instant, skipping the records whose lease
+     * held by another relay is not expired. Returns the claimed records.
+     */
+    List<OutboxEntity> claimRelayable(String claim, Instant pendingBefore, Instant leaseUntil, int limit);
+
+    /**
+     * Removes the passed records, only if they are still at the read revision and claimed with the passed
+     * claim, so a change registered in the meantime is relayed again. The claim on the records not removed
+     * is released. Returns the number of removed records.
+     */
+    int removeRelayed(String claim, Collection<OutboxEntity> outboxEntities);
+
+    /**
+     * Releases the claim on all the records claimed with the passed claim, so they can be relayed again.
+     */
+    void releaseClaim(String claim);
+}
@@ -0,0 +1,104 @@
+package it.gov.pagopa.mocker.config.repository.specification;
+
+import com.mongodb.ErrorCategory;
+import it.gov.pagopa.mocker.config.entity.OutboxEntity;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+public class OutboxCriteriaRepositoryImpl implements OutboxCriteriaRepository {
+
+    private final MongoTemplate mongoTemplate;
+
+    public OutboxCriteriaRepositoryImpl(MongoTemplate mongoTemplate) {
+        this.mongoTemplate = mongoTemplate;
+    }
+
+    @Override
+    public void registerChanges(Collection<String> ids, boolean ready) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Instant now = Instant.now();
+        BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, OutboxEntity.class);
+        for (String id : ids) {
+            Update update = new Update()
+                    .set("ready", ready)
+                    .set("updatedAt", now)
+                    .inc("revision", 1);
+            bulkOperations.upsert(Query.query(Criteria.where("id").is(id)), update);
+        }
+        try {
+            bulkOperations.execute();
+        } catch (BulkOperationException e) {
+            // two concurrent upserts of the same record can both try the insert: the loser is superseded by the winner
+            boolean onlyDuplicates = e.getErrors().stream().allMatch(error -> ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY);
+            if (!onlyDuplicates) {
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public List<OutboxEntity> claimRelayable(String claim, Instant pendingBefore, Instant leaseUntil, int limit) {
+        Instant now = Instant.now();
+        Criteria relayable = new Criteria().andOperator(
+                new Criteria().orOperator(
+                        Criteria.where("ready").is(true),
+                        Criteria.where("updatedAt").lt(pendingBefore)),
+                new Criteria().orOperator(
+                        Criteria.where("leaseUntil").is(null),
+                        Criteria.where("leaseUntil").lt(now)));
+
+        // reading the candidates and claiming them, the filter is repeated so a record claimed by another relay in the meantime is skipped
+        Query candidatesQuery = Query.query(relayable)
+                .with(Sort.by(Sort.Direction.ASC, "updatedAt"))
+                .limit(limit);
+        candidatesQuery.fields().include("id");
+        List<String> candidateIds = mongoTemplate.find(candidatesQuery, OutboxEntity.class).stream().map(OutboxEntity::getId).toList();
+        if (candidateIds.isEmpty()) {
+            return List.of();
+        }
+        mongoTemplate.updateMulti(
+                Query.query(Criteria.where("id").in(candidateIds)).addCriteria(relayable),
+                new Update().set("claimedBy", claim).set("leaseUntil", leaseUntil),
+                OutboxEntity.class);
+
+        // the revision is read after the claim, so a change registered before it is included in this relay
+        Query claimedQuery = Query.query(Criteria.where("claimedBy").is(claim))
+                .with(Sort.by(Sort.Direction.ASC, "updatedAt"));
+        return mongoTemplate.find(claimedQuery, OutboxEntity.class);
+    }
+
+    @Override
+    public int removeRelayed(String claim, Collection<OutboxEntity> outboxEntities) {
+        int removed = 0;
+        if (!outboxEntities.isEmpty()) {
+            BulkOperations bulkOperations = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, OutboxEntity.class);
+            for (OutboxEntity outboxEntity : outboxEntities) {
+                bulkOperations.remove(Query.query(Criteria.where("id").is(outboxEntity.getId())
+                        .and("revision").is(outboxEntity.getRevision())
+                        .and("claimedBy").is(claim)));
+            }
+            removed = bulkOperations.execute().getDeletedCount();
+        }
+        releaseClaim(claim);
+        return removed;
+    }
+
+    @Override
+    public void releaseClaim(String claim) {
+        mongoTemplate.updateMulti(
+                Query.query(Criteria.where("claimedBy").is(claim)),
+                new Update().unset("claimedBy").unset("leaseUntil"),
+                OutboxEntity.class);
+    }
+}
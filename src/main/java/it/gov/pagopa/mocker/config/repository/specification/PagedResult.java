@@ -0,0 +1,29 @@
+package it.gov.pagopa.mocker.config.repository.specification;
+
+import it.gov.pagopa.mocker.config.model.enumeration.CountMode;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * A page of elements retrieved either by offset or by keyset pagination.
+ */
+@Data
+@Builder
+@AllArgsConstructor
+public class PagedResult<T> {
+
+    private List<T> content;
+
+    private int page;
+
+    private int limit;
+
+    private Long totalItems;
+
+    private CountMode countMode;
+
+    private String nextCursor;
+}
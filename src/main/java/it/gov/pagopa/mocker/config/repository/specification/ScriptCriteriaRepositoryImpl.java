@@ -1,6 +1,7 @@
 package it.gov.pagopa.mocker.config.repository.specification;
 
 import it.gov.pagopa.mocker.config.entity.ScriptEntity;
+import it.gov.pagopa.mocker.config.util.Utility;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.core.MongoTemplate;
@@ -22,7 +23,7 @@ public class ScriptCriteriaRepositoryImpl implements ScriptCriteriaRepository {
     public List<ScriptEntity> findAll(String name) {
         Query query = new Query().with(Sort.by(Sort.Direction.ASC, "name"));
         if (StringUtils.isNotEmpty(name)) {
-            query.addCriteria(Criteria.where("name").regex(".*" + name + ".*", "i"));
+            query.addCriteria(Criteria.where("name").regex(".*" + Utility.escapeRegex(name) + ".*", "i"));
         }
         query.addCriteria(Criteria.where("selectable").is(Boolean.TRUE));
         return mongoTemplate.find(query, ScriptEntity.class);
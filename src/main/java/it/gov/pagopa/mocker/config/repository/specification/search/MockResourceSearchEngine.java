@@ -0,0 +1,14 @@
+package it.gov.pagopa.mocker.config.repository.specification.search;
+
+import org.springframework.data.mongodb.core.query.CriteriaDefinition;
+
+/**
+ * Translates the name and tag filters of the mock resource search into MongoDB criteria.
+ * Each implementation relies on a different index on the mock_resources collection.
+ */
+public interface MockResourceSearchEngine {
+
+    CriteriaDefinition getNameCriteria(String name);
+
+    CriteriaDefinition getTagCriteria(String tag);
+}
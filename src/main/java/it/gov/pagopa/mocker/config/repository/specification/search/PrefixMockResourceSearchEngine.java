@@ -0,0 +1,23 @@
+package it.gov.pagopa.mocker.config.repository.specification.search;
+
+import it.gov.pagopa.mocker.config.util.Utility;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.CriteriaDefinition;
+
+/**
+ * Case-insensitive prefix search on the lowercase copy of the name, with exact match on tags.
+ * An anchored and case-sensitive regex is translated by MongoDB in a bounded scan of
+ * normalized_name_idx, while the tag equality is resolved by tags_idx.
+ */
+public class PrefixMockResourceSearchEngine implements MockResourceSearchEngine {
+
+    @Override
+    public CriteriaDefinition getNameCriteria(String name) {
+        return Criteria.where("normalizedName").regex("^" + Utility.escapeRegex(Utility.normalize(name)));
+    }
+
+    @Override
+    public CriteriaDefinition getTagCriteria(String tag) {
+        return Criteria.where("tags").is(tag);
+    }
+}
@@ -0,0 +1,22 @@
+package it.gov.pagopa.mocker.config.repository.specification.search;
+
+import it.gov.pagopa.mocker.config.util.Utility;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.CriteriaDefinition;
+
+/**
+ * Case-insensitive substring search on name and tags. It cannot use any index, so each search
+ * scans the whole collection: it is kept only as fallback for the previous search behaviour.
+ */
+public class RegexMockResourceSearchEngine implements MockResourceSearchEngine {
+
+    @Override
+    public CriteriaDefinition getNameCriteria(String name) {
+        return Criteria.where("name").regex(".*" + Utility.escapeRegex(name) + ".*", "i");
+    }
+
+    @Override
+    public CriteriaDefinition getTagCriteria(String tag) {
+        return Criteria.where("tags").regex(Utility.escapeRegex(tag), "i");
+    }
+}
@@ -0,0 +1,22 @@
+package it.gov.pagopa.mocker.config.repository.specification.search;
+
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.CriteriaDefinition;
+import org.springframework.data.mongodb.core.query.TextCriteria;
+
+/**
+ * Full-text search on the words of the name, resolved by the text index defined on the name field,
+ * with exact match on tags.
+ */
+public class TextMockResourceSearchEngine implements MockResourceSearchEngine {
+
+    @Override
+    public CriteriaDefinition getNameCriteria(String name) {
+        return TextCriteria.forDefaultLanguage().matching(name);
+    }
+
+    @Override
+    public CriteriaDefinition getTagCriteria(String tag) {
+        return Criteria.where("tags").is(tag);
+    }
+}
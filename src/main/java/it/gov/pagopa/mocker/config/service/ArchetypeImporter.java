@@ -0,0 +1,133 @@
+package it.gov.pagopa.mocker.config.service;
+
+import it.gov.pagopa.mocker.config.entity.ArchetypeEntity;
+import it.gov.pagopa.mocker.config.entity.ArchetypeSchemaEntity;
+import it.gov.pagopa.mocker.config.model.archetype.ArchetypeHandlingResult;
+import it.gov.pagopa.mocker.config.model.enumeration.ArchetypeImportMode;
+import it.gov.pagopa.mocker.config.model.enumeration.HttpMethod;
+import it.gov.pagopa.mocker.config.repository.ArchetypeRepository;
+import it.gov.pagopa.mocker.config.repository.specification.BulkWriteSummary;
+import it.gov.pagopa.mocker.config.util.OpenAPIExtractor;
+
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the archetypes extracted from an OpenAPI with the ones already stored for the same subsystem,
+ * writing the changes in bulk batches while the OpenAPI is still being walked. In SKIP_EXISTING mode only
+ * the new operations are inserted. In DIFF mode the operations whose fingerprint is changed are replaced
+ * too and, if requested, the stored operations not defined anymore in the OpenAPI are deleted. A replacement
+ * is not applied if the stored archetype was changed after it was read, and it is reported as conflicted.
+ * An instance handles a single import and is not thread-safe.
+ */
+class ArchetypeImporter implements Consumer<OpenAPIExtractor.ExtractedArchetype> {
+
+    private final ArchetypeRepository archetypeRepository;
+
+    private final ArchetypeSchemaService archetypeSchemaService;
+
+    private final String subsystem;
+
+    private final ArchetypeImportMode mode;
+
+    private final int batchSize;
+
+    private final Map<String, ArchetypeEntity> storedArchetypes;
+
+    private final Set<String> storedSchemaIds = new HashSet<>();
+
+    private final List<ArchetypeEntity> insertions = new ArrayList<>();
+
+    private final List<ArchetypeEntity> replacements = new ArrayList<>();
+
+    private final Map<String, ArchetypeSchemaEntity> schemas = new LinkedHashMap<>();
+
+    private int insertedArchetypes;
+
+    private int updatedArchetypes;
+
+    private int conflictedArchetypes;
+
+    private int deletedArchetypes;
+
+    private int unchangedArchetypes;
+
+    ArchetypeImporter(ArchetypeRepository archetypeRepository, ArchetypeSchemaService archetypeSchemaService, String subsystem, ArchetypeImportMode mode, int batchSize) {
+        this.archetypeRepository = archetypeRepository;
+        this.archetypeSchemaService = archetypeSchemaService;
+        this.subsystem = subsystem;
+        this.mode = mode;
+        this.batchSize = batchSize;
+
+        // the archetypes already defined for the subsystem are read once, so the extracted ones are compared in memory
+        List<ArchetypeEntity> archetypeEntities = mode == ArchetypeImportMode.DIFF
+                ? archetypeRepository.findFingerprintsBySubsystemUrl(subsystem)
+                : archetypeRepository.findResourcesBySubsystemUrl(subsystem);
+        this.storedArchetypes = archetypeEntities.stream()
+                .collect(Collectors.toMap(entity -> getResourceKey(entity.getResourceUrl(), entity.getHttpMethod()), entity -> entity, (first, second) -> first, HashMap::new));
+    }
+
+    @Override
+    public void accept(OpenAPIExtractor.ExtractedArchetype extractedArchetype) {
+        ArchetypeEntity archetypeEntity = extractedArchetype.archetype();
+
+        // removing the matched archetype, so at the end only the ones not defined anymore in the OpenAPI will remain
+        ArchetypeEntity storedArchetype = storedArchetypes.remove(getResourceKey(archetypeEntity.getResourceUrl(), archetypeEntity.getHttpMethod()));
+        if (storedArchetype == null) {
+            archetypeEntity.setVersion(0L);
+            insertions.add(archetypeEntity);
+        } else if (mode == ArchetypeImportMode.DIFF && !Objects.equals(storedArchetype.getFingerprint(), archetypeEntity.getFingerprint())) {
+            archetypeEntity.setId(storedArchetype.getId());
+            archetypeEntity.setVersion(storedArchetype.getVersion());
+            replacements.add(archetypeEntity);
+        } else {
+            unchangedArchetypes++;
+            return;
+        }
+
+        // only the schemas referenced by the written archetypes are stored, once per import
+        extractedArchetype.schemas().stream()
+                .filter(archetypeSchemaEntity -> storedSchemaIds.add(archetypeSchemaEntity.getId()))
+                .forEach(archetypeSchemaEntity -> schemas.put(archetypeSchemaEntity.getId(), archetypeSchemaEntity));
+        if (insertions.size() + replacements.size() >= batchSize) {
+            writeBatch(List.of());
+        }
+    }
+
+    ArchetypeHandlingResult complete(boolean deleteRemoved) {
+        List<String> deletionIds = mode == ArchetypeImportMode.DIFF && deleteRemoved
+                ? storedArchetypes.values().stream().map(ArchetypeEntity::getId).toList()
+                : List.of();
+        writeBatch(deletionIds);
+
+        // the stored archetypes not matched by the OpenAPI are not unchanged by the import, so they are reported apart
+        boolean diff = mode == ArchetypeImportMode.DIFF;
+        return ArchetypeHandlingResult.builder()
+                .subsystemURL(subsystem)
+                .generatedArchetypes(insertedArchetypes)
+                .updatedArchetypes(diff ? updatedArchetypes : null)
+                .conflictedArchetypes(diff ? conflictedArchetypes : null)
+                .deletedArchetypes(diff ? deletedArchetypes : null)
+                .unchangedArchetypes(unchangedArchetypes)
+                .retainedArchetypes(diff ? storedArchetypes.size() - deletionIds.size() : null)
+                .build();
+    }
+
+    private void writeBatch(List<String> deletionIds) {
+        // the schemas are stored before the archetypes referencing them, so a stored archetype never references a missing schema
+        archetypeSchemaService.storeResponseSchemas(schemas.values());
+        BulkWriteSummary summary = archetypeRepository.applyChanges(insertions, replacements, deletionIds);
+        insertedArchetypes += summary.getInserted();
+        updatedArchetypes += summary.getUpdated();
+        conflictedArchetypes += summary.getConflicted();
+        deletedArchetypes += summary.getDeleted();
+        schemas.clear();
+        insertions.clear();
+        replacements.clear();
+    }
+
+    private static String getResourceKey(String resourceUrl, HttpMethod httpMethod) {
+        return httpMethod + " " + resourceUrl;
+    }
+}
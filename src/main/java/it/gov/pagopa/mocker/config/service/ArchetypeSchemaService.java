@@ -7,6 +7,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+
 @Service
 @Slf4j
 @Transactional
@@ -14,11 +16,11 @@ public class ArchetypeSchemaService {
 
     @Autowired private ArchetypeSchemaRepository archetypeSchemaRepository;
 
-    public ArchetypeSchemaEntity validateResponseSchema(ArchetypeSchemaEntity archetypeSchema) {
-        ArchetypeSchemaEntity validSchema = null;
-        if (archetypeSchema != null) {
-            validSchema = archetypeSchemaRepository.findByName(archetypeSchema.getName()).orElseGet(() -> archetypeSchemaRepository.save(archetypeSchema));
-        }
-        return validSchema;
+    /**
+     * Stores the schemas referenced by the imported archetypes. A schema is identified by its content,
+     * so the ones already stored for the same subsystem are not stored again.
+     */
+    public int storeResponseSchemas(Collection<ArchetypeSchemaEntity> archetypeSchemas) {
+        return archetypeSchemaRepository.upsertAll(archetypeSchemas);
     }
 }
@@ -1,32 +1,43 @@
 package it.gov.pagopa.mocker.config.service;
 
-import io.swagger.parser.OpenAPIParser;
-import io.swagger.v3.parser.core.models.SwaggerParseResult;
+import io.swagger.v3.oas.models.OpenAPI;
 import it.gov.pagopa.mocker.config.entity.ArchetypeEntity;
 import it.gov.pagopa.mocker.config.entity.MockResourceEntity;
 import it.gov.pagopa.mocker.config.exception.AppError;
 import it.gov.pagopa.mocker.config.exception.AppException;
 import it.gov.pagopa.mocker.config.mapper.ConvertMockResourceFromArchetypeToMockResource;
 import it.gov.pagopa.mocker.config.model.archetype.*;
-import it.gov.pagopa.mocker.config.model.enumeration.HttpMethod;
+import it.gov.pagopa.mocker.config.model.enumeration.ArchetypeImportMode;
 import it.gov.pagopa.mocker.config.model.mockresource.MockResource;
 import it.gov.pagopa.mocker.config.repository.ArchetypeRepository;
 import it.gov.pagopa.mocker.config.repository.MockResourceRepository;
+import it.gov.pagopa.mocker.config.repository.specification.PagedResult;
 import it.gov.pagopa.mocker.config.util.OpenAPIExtractor;
+import it.gov.pagopa.mocker.config.util.OpenAPIReader;
+import it.gov.pagopa.mocker.config.util.PageCursor;
+import it.gov.pagopa.mocker.config.util.PlaceholderTemplate;
 import it.gov.pagopa.mocker.config.util.Utility;
 import it.gov.pagopa.mocker.config.util.validation.RequestSemanticValidator;
 import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
-import org.springframework.data.domain.Page;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
 import java.util.stream.Collectors;
 
 @Service
@@ -43,29 +54,52 @@ public class ArchetypeService {
     @Autowired
     private ArchetypeRepository archetypeRepository;
 
+    @Autowired
+    private MockResourceSyncService mockResourceSyncService;
+
     @Autowired
     private ModelMapper modelMapper;
 
-    public ArchetypeHandlingResult importArchetypesFromOpenAPI(MultipartFile file, String subsystem) {
-        ArchetypeHandlingResult archetypeHandlingResult;
-        try {
-            // Parsing file content (json or yaml) into OpenAPI Object
-            SwaggerParseResult parsedOpenAPI = new OpenAPIParser().readContents(new String(file.getBytes()), List.of(), null);
+    @Value("${openapi.import.batch-size:200}")
+    private int importBatchSize;
 
-            // Generate archetype from the extracted OpenAPI content
-            List<ArchetypeEntity> archetypeEntities = OpenAPIExtractor.extractArchetype(parsedOpenAPI.getOpenAPI(), subsystem);
+    @Value("${openapi.import.parallelism:4}")
+    private int importParallelism;
 
-            // Filter only the archetypes that are not already present in DB
-            List<ArchetypeEntity> newArchetypeEntites = archetypeEntities.stream()
-                    .filter(entity -> archetypeRepository.findBySubsystemUrlAndResourceUrlAndHttpMethod(entity.getSubsystemUrl(), entity.getResourceUrl(), entity.getHttpMethod()).isEmpty())
-                    .collect(Collectors.toList());
+    private ForkJoinPool extractionPool;
 
-            // Save the generated resource
-            newArchetypeEntites = archetypeRepository.saveAll(newArchetypeEntites);
-            archetypeHandlingResult = ArchetypeHandlingResult.builder()
-                    .generatedArchetypes(newArchetypeEntites.size())
-                    .subsystemURL(subsystem)
-                    .build();
+    @PostConstruct
+    public void init() {
+        // with a parallelism of 1 the archetypes are extracted sequentially by the request thread
+        if (importParallelism > 1) {
+            extractionPool = new ForkJoinPool(importParallelism);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (extractionPool != null) {
+            extractionPool.shutdownNow();
+        }
+    }
+
+    public ArchetypeHandlingResult importArchetypesFromOpenAPI(MultipartFile file, String subsystem, ArchetypeImportMode mode, boolean deleteRemoved) {
+        ArchetypeHandlingResult archetypeHandlingResult;
+        try (InputStream inputStream = file.getInputStream()) {
+            // Parsing file content (json or yaml) into OpenAPI Object, reading it directly from the uploaded stream
+            OpenAPI openAPI = OpenAPIReader.read(inputStream).getOpenAPI();
+            if (openAPI == null || openAPI.getPaths() == null) {
+                throw new AppException(AppError.OPENAPI_IMPORT_INVALID_FILE_CONTENT);
+            }
+
+            // Generate archetypes from the extracted OpenAPI content, writing the changes in batches while the paths are walked
+            ArchetypeImporter archetypeImporter = new ArchetypeImporter(archetypeRepository, archetypeSchemaService, subsystem, mode, importBatchSize);
+            if (extractionPool != null) {
+                OpenAPIExtractor.extractArchetype(openAPI, subsystem, archetypeImporter, extractionPool);
+            } else {
+                OpenAPIExtractor.extractArchetype(openAPI, subsystem, archetypeImporter);
+            }
+            archetypeHandlingResult = archetypeImporter.complete(deleteRemoved);
 
         } catch (IOException e) {
             log.error("An error occurred while trying to parse the passed OpenAPI file. ", e);
@@ -77,12 +111,13 @@ public class ArchetypeService {
         return archetypeHandlingResult;
     }
 
-    public ArchetypeList getArchetypes(Pageable pageable) {
+    public ArchetypeList getArchetypes(Pageable pageable, String cursor) {
         List<Archetype> archetypes;
-        Page<ArchetypeEntity> archetypePaginatedEntities;
+        PagedResult<ArchetypeEntity> archetypePaginatedEntities;
+        PageCursor pageCursor = cursor != null ? PageCursor.decode(cursor) : null;
         try {
-            archetypePaginatedEntities = archetypeRepository.findAll(pageable);
-            archetypes = archetypePaginatedEntities.stream()
+            archetypePaginatedEntities = archetypeRepository.findAll(pageable, pageCursor);
+            archetypes = archetypePaginatedEntities.getContent().stream()
                     .map(archetype -> modelMapper.map(archetype, Archetype.class))
                     .collect(Collectors.toList());
         } catch (DataAccessException e) {
@@ -114,17 +149,15 @@ public class ArchetypeService {
             // check request semantic validity
             RequestSemanticValidator.validate(archetype);
 
-            // Search if the archetype already exists
-            String subsystem = archetype.getSubsystem();
-            String resourceUrl = archetype.getResourceURL();
-            HttpMethod httpMethod = archetype.getHttpMethod();
-            archetypeRepository.findBySubsystemUrlAndResourceUrlAndHttpMethod(subsystem, resourceUrl, httpMethod)
-                    .ifPresent(res -> {
-                        throw new AppException(AppError.ARCHETYPE_CONFLICT, httpMethod, subsystem + resourceUrl);
-                    });
-
-            // Persisting the archetype
-            response = persistArchetype(archetype);
+            // Persisting the archetype, only if another one for the same resource does not exist
+            ArchetypeEntity archetypeEntity = modelMapper.map(archetype, ArchetypeEntity.class);
+            archetypeEntity.setVersion(0L);
+            try {
+                archetypeEntity = archetypeRepository.insert(archetypeEntity);
+            } catch (DuplicateKeyException e) {
+                throw new AppException(AppError.ARCHETYPE_CONFLICT, archetype.getHttpMethod(), archetype.getSubsystem() + archetype.getResourceURL());
+            }
+            response = modelMapper.map(archetypeEntity, Archetype.class);
 
         } catch (DataAccessException e) {
             log.error("An error occurred while trying to create an archetype. ", e);
@@ -133,21 +166,31 @@ public class ArchetypeService {
         return response;
     }
 
-    public Archetype updateArchetype(String archetypeId, Archetype archetype) {
+    public Archetype updateArchetype(String archetypeId, Archetype archetype, String ifMatch) {
         Archetype response;
         try {
 
-            // Search if the archetype already exists
+            // Search if the archetype already exists and is at the version required by the client
             ArchetypeEntity archetypeEntity = archetypeRepository.findById(archetypeId).orElseThrow(() -> new AppException(AppError.ARCHETYPE_NOT_FOUND, archetypeId));
+            Long currentVersion = archetypeEntity.getVersion();
+            if (!Utility.matchesETag(ifMatch, currentVersion)) {
+                throw new AppException(AppError.ARCHETYPE_PRECONDITION_FAILED, archetypeId, ifMatch);
+            }
 
             // check request semantic validity
             RequestSemanticValidator.validate(archetype, archetypeEntity);
 
-            // delete the old archetype, the new one will replace this archetype
-            archetypeRepository.delete(archetypeEntity);
-
-            // Persisting the archetype
-            response = persistArchetype(archetype);
+            // Replace the old archetype with the new one in a single write, only if it is not changed after the read
+            ArchetypeEntity newArchetypeEntity = modelMapper.map(archetype, ArchetypeEntity.class);
+            newArchetypeEntity.setId(archetypeId);
+            newArchetypeEntity.setVersion(Optional.ofNullable(currentVersion).orElse(0L) + 1);
+            newArchetypeEntity = archetypeRepository.replace(newArchetypeEntity, currentVersion);
+            if (newArchetypeEntity == null) {
+                throw ifMatch != null
+                        ? new AppException(AppError.ARCHETYPE_PRECONDITION_FAILED, archetypeId, ifMatch)
+                        : new AppException(AppError.ARCHETYPE_CONCURRENT_UPDATE, archetypeId);
+            }
+            response = modelMapper.map(newArchetypeEntity, Archetype.class);
 
         } catch (DataAccessException e) {
             log.error("An error occurred while trying to update an archetype. ", e);
@@ -184,23 +227,25 @@ public class ArchetypeService {
             RequestSemanticValidator.validate(mockResourceFromArchetype, archetypeEntity);
 
             // generating resource URL including the parameters passed as input
-            String resourceUrl = archetypeEntity.getResourceUrl();
+            Map<String, String> urlParameters = new HashMap<>();
             for (StaticParameterValue urlParameter : mockResourceFromArchetype.getUrlParameters()) {
-                resourceUrl = resourceUrl.replaceAll("\\{" + urlParameter.getName() + "\\}", urlParameter.getValue());
+                urlParameters.putIfAbsent(urlParameter.getName(), urlParameter.getValue());
             }
+            String resourceUrl = PlaceholderTemplate.compile(archetypeEntity.getResourceUrl(), PlaceholderTemplate.Syntax.BRACES).render(urlParameters);
             log.info(String.format("Generating mock resource with resource URL [%s] from archetype with id [%s]", resourceUrl, archetypeId));
 
-            // Search if the resource already exists
-            String id = Utility.generateResourceId(archetypeEntity.getHttpMethod(), archetypeEntity.getSubsystemUrl(), resourceUrl, List.of());
-            mockResourceRepository.findById(id).ifPresent(res -> {
-                throw new AppException(AppError.MOCK_RESOURCE_CONFLICT, id);
-            });
-
             // Map entity from input model, setting id and tags and completing the entities' tree
             MockResourceEntity mockResourceEntity = ConvertMockResourceFromArchetypeToMockResource.convert(mockResourceFromArchetype, archetypeEntity, resourceUrl);
 
-            // Persisting the mock resource
-            mockResourceEntity = mockResourceRepository.save(mockResourceEntity);
+            // Persisting the mock resource, only if another one with the same identifier does not exist, and publish it for Mocker
+            mockResourceEntity.setVersion(0L);
+            mockResourceSyncService.prepare(mockResourceEntity.getId());
+            try {
+                mockResourceEntity = mockResourceRepository.insert(mockResourceEntity);
+            } catch (DuplicateKeyException e) {
+                throw new AppException(AppError.MOCK_RESOURCE_CONFLICT, mockResourceEntity.getId());
+            }
+            mockResourceSyncService.publish(mockResourceEntity);
             response = modelMapper.map(mockResourceEntity, MockResource.class);
 
         } catch (DataAccessException e) {
@@ -209,13 +254,4 @@ public class ArchetypeService {
         }
         return response;
     }
-
-    private Archetype persistArchetype(Archetype archetype) {
-        // Map entity from input model, setting id and tags and completing the entities' tree
-        ArchetypeEntity archetypeEntity = modelMapper.map(archetype, ArchetypeEntity.class);
-
-        // Save the converted resource
-        archetypeEntity = archetypeRepository.save(archetypeEntity);
-        return modelMapper.map(archetypeEntity, Archetype.class);
-    }
 }
@@ -0,0 +1,306 @@
+package it.gov.pagopa.mocker.config.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.gov.pagopa.mocker.config.entity.MockResourceEntity;
+import it.gov.pagopa.mocker.config.exception.AppError;
+import it.gov.pagopa.mocker.config.exception.AppException;
+import it.gov.pagopa.mocker.config.model.cache.CacheWarmUpStatus;
+import it.gov.pagopa.mocker.config.repository.RedisBatchPublisher;
+import it.gov.pagopa.mocker.config.repository.RedisRepository;
+import it.gov.pagopa.mocker.config.util.Constants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rebuilds the whole mock resource keyspace on Redis starting from MongoDB, i.e. after a Redis
+ * failover or flush. The resources are read with a single cursor and written in pipelined batches
+ * by a bounded number of workers.
+ * A reconciliation also scans the keyspace, removing the keys of the resources not stored anymore and
+ * recording their removal in the change log, i.e. when the changes made in a period were not propagated.
+ * As a resource read by the cursor can be changed or deleted before its batch is written, overwriting the
+ * newer content written by the sync, the resources found in the change log after the start of the warm-up
+ * are published again with their current content once all the batches are written.
+ */
+@Service
+@Slf4j
+public class CacheWarmUpService {
+
+    private static final int MAX_RESYNC_PASSES = 10;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private RedisRepository redisRepository;
+
+    @Autowired
+    private RedisBatchPublisher redisBatchPublisher;
+
+    @Autowired
+    private MockResourceSyncService mockResourceSyncService;
+
+    @Autowired
+    private MockResourceChangeService mockResourceChangeService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${cache.warm-up.on-startup:false}")
+    private boolean warmUpOnStartup;
+
+    @Value("${cache.warm-up.batch-size:500}")
+    private int batchSize;
+
+    @Value("${cache.warm-up.parallelism:4}")
+    private int parallelism;
+
+    private final ExecutorService launcher = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "cache-warm-up"));
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private final AtomicBoolean reconciliationRequested = new AtomicBoolean(false);
+
+    private final AtomicLong publishedResources = new AtomicLong();
+
+    private final AtomicLong failedResources = new AtomicLong();
+
+    private final AtomicLong removedResources = new AtomicLong();
+
+    private volatile boolean reconciliation;
+
+    private volatile Instant startedAt;
+
+    private volatile Instant completedAt;
+
+    private Counter publishedCounter;
+
+    private Counter failedCounter;
+
+    private Counter removedCounter;
+
+    private Counter resyncedCounter;
+
+    private Timer batchTimer;
+
+    @PostConstruct
+    public void registerMetrics() {
+        publishedCounter = Counter.builder("mocker.cache.warmup.published").description("Mock resources published on Redis by the warm-up").register(meterRegistry);
+        failedCounter = Counter.builder("mocker.cache.warmup.failed").description("Mock resources not published on Redis by the warm-up").register(meterRegistry);
+        removedCounter = Counter.builder("mocker.cache.warmup.removed").description("Mock resources removed from Redis by the reconciliation, as not stored anymore").register(meterRegistry);
+        resyncedCounter = Counter.builder("mocker.cache.warmup.resynced").description("Mock resources published again by the warm-up, as changed while running").register(meterRegistry);
+        batchTimer = Timer.builder("mocker.cache.warmup.batch").description("Time taken to write a pipelined batch on Redis").register(meterRegistry);
+        Gauge.builder("mocker.cache.warmup.running", running, flag -> flag.get() ? 1 : 0).register(meterRegistry);
+        Gauge.builder("mocker.cache.warmup.throughput", this, service -> service.getStatus().getThroughput()).description("Mock resources published per second").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpOnStartup() {
+        if (warmUpOnStartup) {
+            startWarmUp();
+        }
+    }
+
+    public CacheWarmUpStatus startWarmUp() {
+        return startWarmUp(false);
+    }
+
+    /**
+     * Starts a warm-up, also reconciling the keyspace if required. A reconciliation required while another
+     * warm-up is running is not rejected, but started again when the running one completes, as the
+     * resources it already read can be older than the request.
+     */
+    public CacheWarmUpStatus startWarmUp(boolean reconcile) {
+        if (reconcile) {
+            reconciliationRequested.set(true);
+        }
+        if (!running.compareAndSet(false, true)) {
+            if (reconcile) {
+                return getStatus();
+            }
+            throw new AppException(AppError.CACHE_WARM_UP_ALREADY_RUNNING, startedAt);
+        }
+        launch();
+        return getStatus();
+    }
+
+    public CacheWarmUpStatus getStatus() {
+        Instant start = startedAt;
+        Instant end = completedAt != null ? completedAt : Instant.now();
+        long published = publishedResources.get();
+        double elapsedSeconds = start != null ? Duration.between(start, end).toMillis() / 1000.0 : 0;
+        return CacheWarmUpStatus.builder()
+                .running(running.get())
+                .startedAt(start)
+                .completedAt(completedAt)
+                .publishedResources(published)
+                .failedResources(failedResources.get())
+                .reconciliation(reconciliation)
+                .removedResources(removedResources.get())
+                .throughput(elapsedSeconds > 0 ? published / elapsedSeconds : 0)
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        launcher.shutdownNow();
+    }
+
+    private void launch() {
+        reconciliation = reconciliationRequested.getAndSet(false);
+        startedAt = Instant.now();
+        completedAt = null;
+        publishedResources.set(0);
+        failedResources.set(0);
+        removedResources.set(0);
+        launcher.submit(this::warmUp);
+    }
+
+    private void warmUp() {
+        log.info(String.format("Starting Redis cache warm-up with batch size [%d], parallelism [%d] and reconciliation [%s]", batchSize, parallelism, reconciliation));
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism);
+
+        // bounding the batches in flight, so the cursor cannot read faster than Redis can write
+        Semaphore inFlightBatches = new Semaphore(parallelism * 2);
+        try {
+            long startSequence = mockResourceChangeService.getLastAllocatedSequence();
+            publishAll(workers, inFlightBatches);
+            workers.shutdown();
+            if (!workers.awaitTermination(1, TimeUnit.HOURS)) {
+                log.warn("The Redis cache warm-up is not terminated in the expected time.");
+            }
+            if (reconciliation) {
+                removeStaleKeys();
+            }
+            resyncChangedResources(startSequence);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("The Redis cache warm-up was interrupted.");
+        } catch (Exception e) {
+            log.error("An error occurred while trying to read the mock resources for the Redis cache warm-up. ", e);
+        } finally {
+            workers.shutdownNow();
+            completedAt = Instant.now();
+            CacheWarmUpStatus status = getStatus();
+            log.info(String.format("Redis cache warm-up completed: [%d] resources published, [%d] failed, [%d] removed, [%.1f] resources/s", status.getPublishedResources(), status.getFailedResources(), status.getRemovedResources(), status.getThroughput()));
+            running.set(false);
+
+            // a reconciliation required while running needs a new pass, checked after the reset so the request cannot be lost
+            if (reconciliationRequested.get() && !launcher.isShutdown() && running.compareAndSet(false, true)) {
+                launch();
+            }
+        }
+    }
+
+    private void publishAll(ExecutorService workers, Semaphore inFlightBatches) throws InterruptedException {
+        Query query = new Query().cursorBatchSize(batchSize);
+        try (CloseableIterator<MockResourceEntity> cursor = mongoTemplate.stream(query, MockResourceEntity.class)) {
+            List<MockResourceEntity> batch = new ArrayList<>(batchSize);
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                if (batch.size() == batchSize) {
+                    submitBatch(workers, inFlightBatches, batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                submitBatch(workers, inFlightBatches, batch);
+            }
+        }
+    }
+
+    private void resyncChangedResources(long startSequence) {
+        // each pass can itself overwrite a change made while it runs, so it is repeated until no change is found
+        long lastSequence = startSequence;
+        for (int pass = 0; pass < MAX_RESYNC_PASSES; pass++) {
+            long readSequence = mockResourceChangeService.forEachChangedResource(lastSequence, batchSize, ids -> {
+                try {
+                    mockResourceSyncService.resync(ids);
+                    resyncedCounter.increment(ids.size());
+                } catch (Exception e) {
+                    log.error(String.format("An error occurred while trying to publish again [%d] mock resources changed during the Redis cache warm-up. ", ids.size()), e);
+                    failedResources.addAndGet(ids.size());
+                    failedCounter.increment(ids.size());
+                }
+            });
+            if (readSequence == lastSequence) {
+                return;
+            }
+            lastSequence = readSequence;
+        }
+        log.warn(String.format("The mock resources are still changing after [%d] passes, the last changes are left to the sync.", MAX_RESYNC_PASSES));
+    }
+
+    private void removeStaleKeys() {
+        redisRepository.scanKeys(Constants.MOCK_RESOURCE_KEY_PATTERN, batchSize, keys -> {
+            Query query = Query.query(Criteria.where("id").in(keys));
+            query.fields().include("id");
+            Set<String> staleKeys = new LinkedHashSet<>(keys);
+            mongoTemplate.find(query, MockResourceEntity.class).forEach(mockResourceEntity -> staleKeys.remove(mockResourceEntity.getId()));
+            if (staleKeys.isEmpty()) {
+                return;
+            }
+
+            // recording the removals in the change log before applying them, so the polling clients see them too
+            try {
+                mockResourceChangeService.append(staleKeys);
+                redisBatchPublisher.publishAllAndWait(staleKeys.stream().map(key -> new RedisRepository.RedisWrite(key, null)).toList());
+                removedResources.addAndGet(staleKeys.size());
+                removedCounter.increment(staleKeys.size());
+            } catch (Exception e) {
+                log.error(String.format("An error occurred while trying to remove [%d] stale mock resources from Redis. ", staleKeys.size()), e);
+                failedResources.addAndGet(staleKeys.size());
+                failedCounter.increment(staleKeys.size());
+            }
+        });
+    }
+
+    private void submitBatch(ExecutorService workers, Semaphore inFlightBatches, List<MockResourceEntity> batch) throws InterruptedException {
+        inFlightBatches.acquire();
+        workers.submit(() -> {
+            try {
+                writeBatch(batch);
+            } finally {
+                inFlightBatches.release();
+            }
+        });
+    }
+
+    private void writeBatch(List<MockResourceEntity> batch) {
+        Map<String, Object> snapshots = new LinkedHashMap<>();
+        for (MockResourceEntity mockResourceEntity : batch) {
+            snapshots.put(mockResourceEntity.getId(), mockResourceSyncService.generateSnapshot(mockResourceEntity));
+        }
+        try {
+            batchTimer.record(() -> redisRepository.saveAll(snapshots));
+            publishedResources.addAndGet(snapshots.size());
+            publishedCounter.increment(snapshots.size());
+        } catch (Exception e) {
+            log.error("An error occurred while trying to write a batch of mock resources on Redis. ", e);
+            failedResources.addAndGet(snapshots.size());
+            failedCounter.increment(snapshots.size());
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package it.gov.pagopa.mocker.config.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.ErrorCategory;
+import com.mongodb.bulk.BulkWriteError;
+import it.gov.pagopa.mocker.config.entity.MockResourceEntity;
+import it.gov.pagopa.mocker.config.exception.AppError;
+import it.gov.pagopa.mocker.config.exception.AppException;
+import it.gov.pagopa.mocker.config.model.enumeration.BulkItemStatus;
+import it.gov.pagopa.mocker.config.model.mockresource.MockResource;
+import it.gov.pagopa.mocker.config.model.mockresource.MockResourceBulkResult;
+import it.gov.pagopa.mocker.config.util.validation.RequestSemanticValidator;
+import lombok.extern.slf4j.Slf4j;
+import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Service;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Imports and exports mock resources in NDJSON format, one resource per line. Both the directions are
+ * streamed: the import writes the resources in unordered bulk batches while reading the request and
+ * the export writes the resources while reading them from a database cursor, so the whole set of
+ * resources is never held in memory.
+ */
+@Service
+@Slf4j
+public class MockResourceBulkService {
+
+    private static final byte LINE_SEPARATOR = '\n';
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MockResourceService mockResourceService;
+
+    @Autowired
+    private MockResourceSyncService mockResourceSyncService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private Validator validator;
+
+    @Autowired
+    private ModelMapper modelMapper;
+
+    @Value("${bulk.batch-size:500}")
+    private int batchSize;
+
+    public void importMockResources(InputStream inputStream, OutputStream outputStream) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        OutputStream resultStream = new BufferedOutputStream(outputStream);
+        List<PendingMockResource> batch = new ArrayList<>(batchSize);
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+
+            // the invalid resources are reported immediately, the valid ones after the write of their batch
+            try {
+                batch.add(new PendingMockResource(lineNumber, toValidMockResourceEntity(line)));
+            } catch (JsonProcessingException e) {
+                writeLine(resultStream, buildResult(lineNumber, null, BulkItemStatus.INVALID, "The line does not contain a valid mock resource: " + e.getOriginalMessage()));
+            } catch (RuntimeException e) {
+                writeLine(resultStream, buildResult(lineNumber, null, BulkItemStatus.INVALID, e.getMessage()));
+            }
+            if (batch.size() == batchSize) {
+                writeBatch(batch, resultStream);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            writeBatch(batch, resultStream);
+        }
+        resultStream.flush();
+    }
+
+    public void exportMockResources(OutputStream outputStream) throws IOException {
+        OutputStream exportStream = new BufferedOutputStream(outputStream);
+        Query query = new Query().cursorBatchSize(batchSize);
+        try (CloseableIterator<MockResourceEntity> cursor = mongoTemplate.stream(query, MockResourceEntity.class)) {
+            while (cursor.hasNext()) {
+                writeLine(exportStream, modelMapper.map(cursor.next(), MockResource.class));
+            }
+        } catch (DataAccessException e) {
+            // the response is already committed, so the stream is interrupted for signalling the error to the client
+            log.error("An error occurred while trying to export the mock resources. ", e);
+            throw new AppException(AppError.INTERNAL_SERVER_ERROR);
+        }
+        exportStream.flush();
+    }
+
+    private MockResourceEntity toValidMockResourceEntity(String line) throws JsonProcessingException {
+        MockResource mockResource = objectMapper.readValue(line, MockResource.class);
+
+        // check request syntactic and semantic validity, as made by the controller for a single resource
+        Set<ConstraintViolation<MockResource>> violations = validator.validate(mockResource);
+        if (!violations.isEmpty()) {
+            throw new IllegalArgumentException(violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining("; ")));
+        }
+        RequestSemanticValidator.validate(mockResource);
+
+        MockResourceEntity mockResourceEntity = mockResourceService.toMockResourceEntity(mockResource);
+        mockResourceEntity.setVersion(0L);
+        return mockResourceEntity;
+    }
+
+    private void writeBatch(List<PendingMockResource> batch, OutputStream resultStream) throws IOException {
+        Map<Integer, MockResourceBulkResult> failures = new HashMap<>();
+        try {
+            // registering the changes in the outbox before the write, so they are propagated even if the process stops
+            mockResourceSyncService.prepare(batch.stream().map(pending -> pending.mockResourceEntity().getId()).toList());
+        } catch (DataAccessException e) {
+            log.error(String.format("An error occurred while trying to register a batch of [%d] mock resources in the outbox. ", batch.size()), e);
+            writeFailedBatch(batch, resultStream);
+            return;
+        }
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, MockResourceEntity.class)
+                    .insert(batch.stream().map(PendingMockResource::mockResourceEntity).toList())
+                    .execute();
+        } catch (BulkOperationException e) {
+            // with an unordered write, the failure of a resource does not stop the write of the others
+            for (BulkWriteError error : e.getErrors()) {
+                PendingMockResource failed = batch.get(error.getIndex());
+                String id = failed.mockResourceEntity().getId();
+                failures.put(error.getIndex(), ErrorCategory.fromErrorCode(error.getCode()) == ErrorCategory.DUPLICATE_KEY
+                        ? buildResult(failed.line(), id, BulkItemStatus.CONFLICT, new AppException(AppError.MOCK_RESOURCE_CONFLICT, id).getMessage())
+                        : buildResult(failed.line(), id, BulkItemStatus.FAILED, error.getMessage()));
+            }
+        } catch (DataAccessException e) {
+            log.error(String.format("An error occurred while trying to import a batch of [%d] mock resources. ", batch.size()), e);
+            for (int index = 0; index < batch.size(); index++) {
+                PendingMockResource failed = batch.get(index);
+                failures.put(index, buildResult(failed.line(), failed.mockResourceEntity().getId(), BulkItemStatus.FAILED, "The mock resource cannot be stored."));
+            }
+        }
+
+        // publishing for Mocker only the resources effectively stored
+        List<MockResourceEntity> created = new ArrayList<>(batch.size());
+        for (int index = 0; index < batch.size(); index++) {
+            PendingMockResource pending = batch.get(index);
+            MockResourceBulkResult result = failures.get(index);
+            if (result == null) {
+                created.add(pending.mockResourceEntity());
+                result = buildResult(pending.line(), pending.mockResourceEntity().getId(), BulkItemStatus.CREATED, null);
+            }
+            writeLine(resultStream, result);
+        }
+        if (!created.isEmpty()) {
+            mockResourceSyncService.publishAllCreated(created);
+        }
+        resultStream.flush();
+    }
+
+    private void writeFailedBatch(List<PendingMockResource> batch, OutputStream resultStream) throws IOException {
+        for (PendingMockResource failed : batch) {
+            writeLine(resultStream, buildResult(failed.line(), failed.mockResourceEntity().getId(), BulkItemStatus.FAILED, "The mock resource cannot be stored."));
+        }
+        resultStream.flush();
+    }
+
+    private void writeLine(OutputStream outputStream, Object value) throws IOException {
+        outputStream.write(objectMapper.writeValueAsBytes(value));
+        outputStream.write(LINE_SEPARATOR);
+    }
+
+    private static MockResourceBulkResult buildResult(long line, String id, BulkItemStatus status, String detail) {
+        return MockResourceBulkResult.builder()
+                .line(line)
+                .id(id)
+                .status(status)
+                .detail(detail)
+                .build();
+    }
+
+    private record PendingMockResource(long line, MockResourceEntity mockResourceEntity) {
+    }
+}
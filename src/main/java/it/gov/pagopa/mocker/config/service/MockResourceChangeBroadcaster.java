@@ -0,0 +1,338 @@
+package it.gov.pagopa.mocker.config.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import it.gov.pagopa.mocker.config.model.mockresource.MockResourceChangeEvent;
+import it.gov.pagopa.mocker.config.util.Constants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Pushes the changes made on the mock resources to the clients subscribed through Server-Sent Events.
+ * The changes are broadcast to all the replicas through Redis pub/sub, so each replica notifies its own
+ * subscribers. The connections are held by the async servlet support and the events are sent by a small
+ * pool of threads shared by all the subscribers: each subscriber has a bounded buffer and, if it does not
+ * read the events as fast as they are produced, it is disconnected instead of slowing down the others.
+ * As a write on a connection whose client stopped reading blocks until the socket timeout of the container,
+ * a send lasting more than a deadline disconnects the subscriber and its thread is replaced in the pool
+ * until the write returns, so a stalled client cannot hold the threads needed by the others.
+ * The changes are published on Redis by a dedicated thread, so the callers never wait for Redis, and the
+ * heartbeats and the send deadlines are checked by a scheduler owned by this service, so they are not
+ * delayed by the other scheduled tasks of the application.
+ */
+@Service
+@Slf4j
+public class MockResourceChangeBroadcaster implements MessageListener {
+
+    private static final TypeReference<List<MockResourceChangeEvent>> EVENT_LIST_TYPE = new TypeReference<>() {};
+
+    // placed in the buffers for sending a comment that keeps the idle connections open
+    private static final MockResourceChangeEvent HEARTBEAT = new MockResourceChangeEvent();
+
+    @Autowired
+    @Qualifier("object")
+    private RedisTemplate<String, Object> redisTemplateObj;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${changes.push.broadcast.enabled:true}")
+    private boolean broadcastEnabled;
+
+    @Value("${changes.push.broadcast.queue-size:1000}")
+    private int broadcastQueueSize;
+
+    @Value("${changes.push.buffer-size:256}")
+    private int bufferSize;
+
+    @Value("${changes.push.senders:2}")
+    private int senders;
+
+    @Value("${changes.push.timeout:1800000}")
+    private long timeout;
+
+    @Value("${changes.push.send-timeout:5000}")
+    private long sendTimeout;
+
+    @Value("${changes.push.heartbeat-interval:30000}")
+    private long heartbeatInterval;
+
+    @Value("${changes.push.send-check-interval:1000}")
+    private long sendCheckInterval;
+
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger stalledSenders = new AtomicInteger();
+
+    private ThreadPoolExecutor sender;
+
+    private ThreadPoolExecutor publisher;
+
+    private ScheduledExecutorService scheduler;
+
+    private Counter droppedCounter;
+
+    private Counter lostCounter;
+
+    private Counter stalledCounter;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCounter = new AtomicInteger();
+        sender = new ThreadPoolExecutor(senders, senders, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> new Thread(runnable, "mock-resource-change-sender-" + threadCounter.incrementAndGet()));
+        publisher = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(broadcastQueueSize),
+                runnable -> new Thread(runnable, "mock-resource-change-publisher"));
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "mock-resource-change-scheduler"));
+        scheduler.scheduleWithFixedDelay(() -> runQuietly(this::sendHeartbeat), heartbeatInterval, heartbeatInterval, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(() -> runQuietly(this::disconnectStalledSubscribers), sendCheckInterval, sendCheckInterval, TimeUnit.MILLISECONDS);
+        droppedCounter = Counter.builder("mocker.changes.push.dropped").description("Subscribers disconnected because their buffer was full").register(meterRegistry);
+        lostCounter = Counter.builder("mocker.changes.push.lost").description("Changes not broadcast to the replicas because the publication queue was full or Redis failed").register(meterRegistry);
+        stalledCounter = Counter.builder("mocker.changes.push.stalled").description("Subscribers disconnected because a send lasted more than the send timeout").register(meterRegistry);
+        Gauge.builder("mocker.changes.push.subscribers", subscriptions, Set::size).description("Clients subscribed to the mock resource changes").register(meterRegistry);
+        Gauge.builder("mocker.changes.push.senders.stalled", stalledSenders, AtomicInteger::get).description("Sender threads blocked on a disconnected subscriber").register(meterRegistry);
+    }
+
+    /**
+     * Subscribes a client to the changes of the mock resources of the passed subsystem, or of all the
+     * subsystems if not passed.
+     */
+    public SseEmitter subscribe(String subsystem) {
+        return subscribe(subsystem, new SseEmitter(timeout));
+    }
+
+    SseEmitter subscribe(String subsystem, SseEmitter emitter) {
+        Subscription subscription = new Subscription(emitter, subsystem, new ArrayBlockingQueue<>(bufferSize));
+        emitter.onCompletion(() -> subscriptions.remove(subscription));
+        emitter.onTimeout(() -> subscriptions.remove(subscription));
+        emitter.onError(error -> subscriptions.remove(subscription));
+        subscriptions.add(subscription);
+        return emitter;
+    }
+
+    /**
+     * Notifies the passed changes to the subscribers of all the replicas, without waiting for Redis.
+     * A failure is only logged, as the subscribers can recover the missed changes from the change log.
+     */
+    public void broadcast(List<MockResourceChangeEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        if (!broadcastEnabled) {
+            dispatch(events);
+            return;
+        }
+        try {
+            publisher.execute(() -> publish(events));
+        } catch (RejectedExecutionException e) {
+            lostCounter.increment(events.size());
+            log.warn(String.format("[%d] mock resource changes are not broadcast, as the publication queue is full.", events.size()));
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Object events = redisTemplateObj.getValueSerializer().deserialize(message.getBody());
+        if (events != null) {
+            dispatch(objectMapper.convertValue(events, EVENT_LIST_TYPE));
+        }
+    }
+
+    void sendHeartbeat() {
+        for (Subscription subscription : subscriptions) {
+            enqueue(subscription, HEARTBEAT);
+        }
+    }
+
+    /**
+     * Disconnects the subscribers whose current send lasts more than the send timeout, adding a thread to
+     * the pool for each sender blocked on them, so the other subscribers keep receiving their events.
+     */
+    void disconnectStalledSubscribers() {
+        long now = System.currentTimeMillis();
+        for (Subscription subscription : subscriptions) {
+            long sendStartedAt = subscription.sendStartedAt().get();
+            if (sendStartedAt > 0 && now - sendStartedAt > sendTimeout && subscriptions.remove(subscription)) {
+                stalledCounter.increment();
+                log.warn(String.format("Disconnecting a subscriber of the mock resource changes, as a send is lasting more than [%d] ms.", sendTimeout));
+
+                // the emitter is completed by its sender when the write returns, as the emitter is locked by the write
+                if (subscription.stalled().compareAndSet(false, true)) {
+                    resizeSenders(stalledSenders.incrementAndGet());
+                }
+                Future<?> drainTask = subscription.drainTask().get();
+                if (drainTask != null) {
+                    drainTask.cancel(true);
+                }
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        publisher.shutdownNow();
+        sender.shutdownNow();
+        subscriptions.stream()
+                .filter(subscription -> subscription.sendStartedAt().get() == 0)
+                .forEach(subscription -> completeQuietly(subscription.emitter()));
+    }
+
+    private void publish(List<MockResourceChangeEvent> events) {
+        try {
+            redisTemplateObj.convertAndSend(Constants.MOCK_RESOURCE_CHANGE_CHANNEL, events);
+        } catch (Exception e) {
+            lostCounter.increment(events.size());
+            log.error(String.format("An error occurred while trying to broadcast [%d] mock resource changes. ", events.size()), e);
+        }
+    }
+
+    private void dispatch(List<MockResourceChangeEvent> events) {
+        for (Subscription subscription : subscriptions) {
+            for (MockResourceChangeEvent event : events) {
+                // the subsystem of a removed resource is not known anymore, so its removal is sent to all the subscribers
+                if (subscription.subsystem() == null || event.getSubsystem() == null || subscription.subsystem().equals(event.getSubsystem())) {
+                    enqueue(subscription, event);
+                }
+            }
+        }
+    }
+
+    private void enqueue(Subscription subscription, MockResourceChangeEvent event) {
+        if (!subscription.buffer().offer(event)) {
+            // the subscriber is too slow: it must reconnect and recover the missed changes from the change log
+            if (subscriptions.remove(subscription)) {
+                droppedCounter.increment();
+                log.warn(String.format("Disconnecting a subscriber of the mock resource changes, as its buffer of [%d] events is full.", bufferSize));
+
+                // completed by a sender, as the emitter could be locked by a write in progress
+                if (subscription.scheduled().compareAndSet(false, true)) {
+                    scheduleDrain(subscription);
+                }
+            }
+            return;
+        }
+
+        // only one sender at a time drains the buffer of a subscriber, so the events are sent in order
+        if (subscription.scheduled().compareAndSet(false, true)) {
+            scheduleDrain(subscription);
+        }
+    }
+
+    private void scheduleDrain(Subscription subscription) {
+        try {
+            subscription.drainTask().set(sender.submit(() -> drain(subscription)));
+        } catch (RejectedExecutionException e) {
+            subscription.scheduled().set(false);
+        }
+    }
+
+    private void drain(Subscription subscription) {
+        try {
+            MockResourceChangeEvent event;
+            while (subscriptions.contains(subscription) && (event = subscription.buffer().poll()) != null) {
+                subscription.sendStartedAt().set(System.currentTimeMillis());
+                if (event == HEARTBEAT) {
+                    subscription.emitter().send(SseEmitter.event().comment("heartbeat"));
+                } else {
+                    subscription.emitter().send(SseEmitter.event().name("change").data(event, MediaType.APPLICATION_JSON));
+                }
+                subscription.sendStartedAt().set(0);
+            }
+        } catch (IOException | IllegalStateException e) {
+            // the client is disconnected, or the emitter is already completed
+            subscriptions.remove(subscription);
+        } finally {
+            subscription.sendStartedAt().set(0);
+            subscription.scheduled().set(false);
+        }
+
+        // a subscriber disconnected while sending is completed here, once the write has released the emitter
+        if (!subscriptions.contains(subscription)) {
+            subscription.buffer().clear();
+            completeQuietly(subscription.emitter());
+            if (subscription.stalled().compareAndSet(true, false)) {
+                resizeSenders(stalledSenders.decrementAndGet());
+            }
+            return;
+        }
+
+        // an event added after the last poll but before the flag reset would not be scheduled by its producer
+        if (!subscription.buffer().isEmpty() && subscription.scheduled().compareAndSet(false, true)) {
+            scheduleDrain(subscription);
+        }
+    }
+
+    private synchronized void resizeSenders(int stalled) {
+        // the maximum size is raised before and lowered after the core size, as it cannot be lower
+        int size = senders + Math.max(0, stalled);
+        if (size > sender.getMaximumPoolSize()) {
+            sender.setMaximumPoolSize(size);
+            sender.setCorePoolSize(size);
+        } else {
+            sender.setCorePoolSize(size);
+            sender.setMaximumPoolSize(size);
+        }
+    }
+
+    private static void runQuietly(Runnable task) {
+        // an exception thrown by a periodic task would cancel its next runs
+        try {
+            task.run();
+        } catch (Exception e) {
+            log.error("An error occurred while checking the subscribers of the mock resource changes. ", e);
+        }
+    }
+
+    private static void completeQuietly(SseEmitter emitter) {
+        try {
+            emitter.complete();
+        } catch (Exception e) {
+            log.debug("The emitter of a subscriber of the mock resource changes was already completed.", e);
+        }
+    }
+
+    private record Subscription(SseEmitter emitter, String subsystem, BlockingQueue<MockResourceChangeEvent> buffer,
+                                AtomicBoolean scheduled, AtomicLong sendStartedAt, AtomicBoolean stalled, AtomicReference<Future<?>> drainTask) {
+
+        private Subscription(SseEmitter emitter, String subsystem, BlockingQueue<MockResourceChangeEvent> buffer) {
+            this(emitter, subsystem, buffer, new AtomicBoolean(false), new AtomicLong(), new AtomicBoolean(false), new AtomicReference<>());
+        }
+
+        // each subscription is a distinct client, even if subscribed with the same parameters
+        @Override
+        public boolean equals(Object other) {
+            return this == other;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(this);
+        }
+    }
+}
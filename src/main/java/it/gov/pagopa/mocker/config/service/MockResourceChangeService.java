@@ -0,0 +1,193 @@
+package it.gov.pagopa.mocker.config.service;
+
+import it.gov.pagopa.mocker.config.entity.MockResourceChangeEntity;
+import it.gov.pagopa.mocker.config.entity.MockResourceEntity;
+import it.gov.pagopa.mocker.config.entity.SyncStateEntity;
+import it.gov.pagopa.mocker.config.exception.AppError;
+import it.gov.pagopa.mocker.config.exception.AppException;
+import it.gov.pagopa.mocker.config.model.mockresource.MockResource;
+import it.gov.pagopa.mocker.config.model.mockresource.MockResourceChange;
+import it.gov.pagopa.mocker.config.model.mockresource.MockResourceChangeList;
+import it.gov.pagopa.mocker.config.repository.MockResourceChangeRepository;
+import it.gov.pagopa.mocker.config.repository.MockResourceRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.modelmapper.ModelMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the log of the changes made on the mock resources, so a client can retrieve only the resources
+ * changed after the last change it has seen. Each entry has a global sequence, allocated in ranges by the
+ * writers: as two writers can store their ranges in a different order, a missing sequence is considered
+ * still being written and the changes after it are not returned, unless the gap is older than a timeout.
+ */
+@Service
+@Slf4j
+public class MockResourceChangeService {
+
+    private static final String SEQUENCE_ID = "mock_resource_changes";
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private MockResourceChangeRepository mockResourceChangeRepository;
+
+    @Autowired
+    private MockResourceRepository mockResourceRepository;
+
+    @Autowired
+    private ModelMapper modelMapper;
+
+    @Value("${changes.gap-timeout:10000}")
+    private long gapTimeout;
+
+    /**
+     * Appends a change for each of the passed mock resources. The same resource can be appended more
+     * than once, as the client receives it only once with its current content.
+     */
+    public void append(Collection<String> resourceIds) {
+        if (resourceIds.isEmpty()) {
+            return;
+        }
+        long lastSequence = allocateSequences(resourceIds.size());
+        long sequence = lastSequence - resourceIds.size();
+        Instant now = Instant.now();
+        List<MockResourceChangeEntity> mockResourceChangeEntities = new ArrayList<>(resourceIds.size());
+        for (String resourceId : resourceIds) {
+            mockResourceChangeEntities.add(MockResourceChangeEntity.builder()
+                    .id(++sequence)
+                    .resourceId(resourceId)
+                    .changedAt(now)
+                    .build());
+        }
+        mockResourceChangeRepository.insert(mockResourceChangeEntities);
+    }
+
+    public MockResourceChangeList getChanges(String since, int limit) {
+        MockResourceChangeList response;
+        try {
+            Instant gapDeadline = Instant.now().minusMillis(gapTimeout);
+
+            // without a token only the current position is returned, from which the client can start after a full read
+            if (since == null) {
+                long head = mockResourceChangeRepository.findFirstByChangedAtLessThanOrderByIdDesc(gapDeadline)
+                        .map(MockResourceChangeEntity::getId)
+                        .orElse(0L);
+                return MockResourceChangeList.builder().changes(List.of()).nextToken(String.valueOf(head)).hasMore(false).build();
+            }
+            long sinceSequence = parseToken(since);
+            checkRetention(since, sinceSequence, gapDeadline);
+
+            // reading the entries only up to the first gap still being written
+            List<MockResourceChangeEntity> entries = mockResourceChangeRepository.findByIdGreaterThanOrderByIdAsc(sinceSequence, PageRequest.of(0, limit));
+            Map<String, Long> lastSequenceByResource = new LinkedHashMap<>();
+            long lastSequence = sinceSequence;
+            boolean stoppedOnGap = false;
+            for (MockResourceChangeEntity entry : entries) {
+                if (entry.getId() != lastSequence + 1 && entry.getChangedAt().isAfter(gapDeadline)) {
+                    stoppedOnGap = true;
+                    break;
+                }
+                lastSequenceByResource.remove(entry.getResourceId());
+                lastSequenceByResource.put(entry.getResourceId(), entry.getId());
+                lastSequence = entry.getId();
+            }
+
+            // reading the current content of all the changed resources with a single query
+            Map<String, MockResourceEntity> mockResourceEntities = mockResourceRepository.findAllById(lastSequenceByResource.keySet()).stream()
+                    .collect(Collectors.toMap(MockResourceEntity::getId, Function.identity()));
+            List<MockResourceChange> changes = new ArrayList<>(lastSequenceByResource.size());
+            lastSequenceByResource.forEach((resourceId, sequence) -> {
+                MockResourceEntity mockResourceEntity = mockResourceEntities.get(resourceId);
+                changes.add(MockResourceChange.builder()
+                        .id(resourceId)
+                        .sequence(sequence)
+                        .version(mockResourceEntity != null ? Optional.ofNullable(mockResourceEntity.getVersion()).orElse(0L) : null)
+                        .deleted(mockResourceEntity == null)
+                        .resource(mockResourceEntity != null ? modelMapper.map(mockResourceEntity, MockResource.class) : null)
+                        .build());
+            });
+            response = MockResourceChangeList.builder()
+                    .changes(changes)
+                    .nextToken(String.valueOf(lastSequence))
+                    .hasMore(!stoppedOnGap && entries.size() == limit)
+                    .build();
+
+        } catch (DataAccessException e) {
+            log.error("An error occurred while trying to retrieve the changes of the mock resources. ", e);
+            throw new AppException(AppError.INTERNAL_SERVER_ERROR);
+        }
+        return response;
+    }
+
+    /**
+     * Returns the last sequence allocated to a change, so the changes made from now on can be read later
+     * with {@link #forEachChangedResource}.
+     */
+    public long getLastAllocatedSequence() {
+        SyncStateEntity syncStateEntity = mongoTemplate.findById(SEQUENCE_ID, SyncStateEntity.class);
+        return syncStateEntity != null && syncStateEntity.getSequence() != null ? syncStateEntity.getSequence() : 0;
+    }
+
+    /**
+     * Passes to the consumer, a page at a time, the resources changed after the passed sequence,
+     * returning the last sequence read.
+     */
+    public long forEachChangedResource(long sinceSequence, int pageSize, Consumer<Set<String>> consumer) {
+        long lastSequence = sinceSequence;
+        List<MockResourceChangeEntity> entries;
+        do {
+            entries = mockResourceChangeRepository.findByIdGreaterThanOrderByIdAsc(lastSequence, PageRequest.of(0, pageSize));
+            if (entries.isEmpty()) {
+                break;
+            }
+            consumer.accept(entries.stream().map(MockResourceChangeEntity::getResourceId).collect(Collectors.toCollection(LinkedHashSet::new)));
+            lastSequence = entries.get(entries.size() - 1).getId();
+        } while (entries.size() == pageSize);
+        return lastSequence;
+    }
+
+    private long allocateSequences(int count) {
+        SyncStateEntity syncStateEntity = mongoTemplate.findAndModify(
+                Query.query(Criteria.where("id").is(SEQUENCE_ID)),
+                new Update().inc("sequence", count),
+                FindAndModifyOptions.options().returnNew(true).upsert(true),
+                SyncStateEntity.class);
+        return Objects.requireNonNull(syncStateEntity).getSequence();
+    }
+
+    private void checkRetention(String since, long sinceSequence, Instant gapDeadline) {
+        // if the entries following the token are expired, the changes made after it cannot be rebuilt
+        Optional<MockResourceChangeEntity> oldestEntry = mockResourceChangeRepository.findFirstByOrderByIdAsc();
+        if (oldestEntry.isPresent() && oldestEntry.get().getId() > sinceSequence + 1 && oldestEntry.get().getChangedAt().isBefore(gapDeadline)) {
+            throw new AppException(AppError.CHANGE_TOKEN_EXPIRED, since);
+        }
+    }
+
+    private static long parseToken(String since) {
+        try {
+            long sinceSequence = Long.parseLong(since);
+            if (sinceSequence < 0) {
+                throw new AppException(AppError.CHANGE_TOKEN_BAD_REQUEST_INVALID, since);
+            }
+            return sinceSequence;
+        } catch (NumberFormatException e) {
+            throw new AppException(AppError.CHANGE_TOKEN_BAD_REQUEST_INVALID, since);
+        }
+    }
+}
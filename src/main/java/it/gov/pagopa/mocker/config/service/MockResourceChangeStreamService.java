@@ -0,0 +1,346 @@
+package it.gov.pagopa.mocker.config.service;
+
+import com.mongodb.MongoServerException;
+import com.mongodb.client.ChangeStreamIterable;
+import com.mongodb.client.MongoChangeStreamCursor;
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import com.mongodb.client.model.changestream.FullDocument;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.gov.pagopa.mocker.config.entity.MockResourceEntity;
+import it.gov.pagopa.mocker.config.entity.SyncStateEntity;
+import it.gov.pagopa.mocker.config.repository.RedisBatchPublisher;
+import it.gov.pagopa.mocker.config.repository.RedisRepository;
+import it.gov.pagopa.mocker.config.repository.SyncStateRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the Redis keyspace read by Mocker aligned with the mock resources by tailing the change stream
+ * of their collection, instead of relaying the changes registered by the application. So also the changes
+ * made directly on the database are propagated, and pushed to the subscribed clients through
+ * {@link MockResourceChangeBroadcaster}. The events are written on Redis in pipelined batches and
+ * the resume token of the last written event is stored, so after a restart the stream resumes from there.
+ * If the stream cannot be resumed anymore (i.e. the oplog was rotated), the whole keyspace is reconciled
+ * with the stored resources. The change streams require MongoDB to run as a replica set.
+ * The stream is tailed by a single replica at a time, holding a lease on the synchronization state: the
+ * other replicas wait for the lease to expire, so the resume token, the change log and the Redis keys are
+ * never written by two tailers at different positions of the stream.
+ */
+@Service
+@Slf4j
+@ConditionalOnProperty(value = "redis.sync.mode", havingValue = "CHANGE_STREAM")
+public class MockResourceChangeStreamService {
+
+    private static final String SYNC_STATE_ID = "mock_resources_change_stream";
+
+    private static final int CHANGE_STREAM_HISTORY_LOST = 286;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private RedisBatchPublisher redisBatchPublisher;
+
+    @Autowired
+    private SyncStateRepository syncStateRepository;
+
+    @Autowired
+    private MockResourceSyncService mockResourceSyncService;
+
+    @Autowired
+    private MockResourceChangeService mockResourceChangeService;
+
+    @Autowired
+    private MockResourceChangeBroadcaster mockResourceChangeBroadcaster;
+
+    @Autowired
+    private CacheWarmUpService cacheWarmUpService;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${redis.sync.change-stream.batch-size:500}")
+    private int batchSize;
+
+    @Value("${redis.sync.change-stream.max-await:1000}")
+    private long maxAwait;
+
+    @Value("${redis.sync.change-stream.retry-interval:5000}")
+    private long retryInterval;
+
+    @Value("${redis.sync.change-stream.lease:30000}")
+    private long lease;
+
+    private final Thread tailer = new Thread(this::tail, "mock-resource-change-stream");
+
+    private final String owner = UUID.randomUUID().toString();
+
+    private volatile boolean running;
+
+    private boolean restartRequested;
+
+    private Instant leaseUntil = Instant.MIN;
+
+    private Instant leaseRenewal = Instant.MIN;
+
+    private Counter eventCounter;
+
+    private Counter publishedCounter;
+
+    private Counter failedCounter;
+
+    private Timer batchTimer;
+
+    @PostConstruct
+    public void registerMetrics() {
+        eventCounter = Counter.builder("mocker.changestream.events").description("Change events read from the mock resource change stream").register(meterRegistry);
+        publishedCounter = Counter.builder("mocker.changestream.published").description("Mock resource changes published on Redis from the change stream").register(meterRegistry);
+        failedCounter = Counter.builder("mocker.changestream.failed").description("Batches of mock resource changes not published on Redis, to be retried").register(meterRegistry);
+        batchTimer = Timer.builder("mocker.changestream.batch").description("Time taken to write a pipelined batch on Redis").register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        running = true;
+        tailer.start();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        tailer.interrupt();
+        try {
+            tailer.join(maxAwait + retryInterval);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        releaseLease();
+    }
+
+    private void tail() {
+        log.info("Starting the propagation of the mock resource changes on Redis from the change stream");
+        while (running) {
+            // only the replica holding the lease tails the stream, the others wait for it to expire
+            if (!acquireLease()) {
+                waitFor(retryInterval);
+                continue;
+            }
+            log.info(String.format("Acquired the lease on the mock resource change stream until [%s]", leaseUntil));
+            try {
+                // the restart is retried with the other failures until it succeeds, as the stream cannot be resumed before
+                if (restartRequested) {
+                    restartFromNow();
+                    restartRequested = false;
+                }
+                consumeStream();
+            } catch (LeaseLostException e) {
+                log.warn(String.format("The lease on the mock resource change stream was lost: %s", e.getMessage()));
+            } catch (MongoServerException e) {
+                if (e.getCode() == CHANGE_STREAM_HISTORY_LOST) {
+                    log.warn("The mock resource change stream cannot be resumed anymore, rebuilding the Redis keyspace from database.");
+                    restartRequested = true;
+                } else {
+                    handleFailure(e);
+                }
+            } catch (Exception e) {
+                handleFailure(e);
+            }
+        }
+        log.info("Stopped the propagation of the mock resource changes on Redis from the change stream");
+    }
+
+    private void consumeStream() {
+        try (MongoChangeStreamCursor<ChangeStreamDocument<Document>> cursor = openCursor()) {
+            // the changed resources by id, with a null value for the removed ones
+            Map<String, MockResourceEntity> batch = new LinkedHashMap<>();
+            BsonDocument lastResumeToken = null;
+            while (running) {
+                renewLease();
+
+                // waiting at most for the max await time, so a partial batch is written as soon as the stream is idle
+                ChangeStreamDocument<Document> event = cursor.tryNext();
+                if (event != null) {
+                    eventCounter.increment();
+                    lastResumeToken = event.getResumeToken();
+                    if (!collect(event, batch)) {
+                        writeBatch(batch, null);
+                        return;
+                    }
+                }
+                if (lastResumeToken != null && (event == null || batch.size() >= batchSize)) {
+                    writeBatch(batch, lastResumeToken);
+                    batch.clear();
+                    lastResumeToken = null;
+                }
+            }
+        }
+    }
+
+    private MongoChangeStreamCursor<ChangeStreamDocument<Document>> openCursor() {
+        ChangeStreamIterable<Document> changeStream = mongoTemplate.getCollection(mongoTemplate.getCollectionName(MockResourceEntity.class))
+                .watch()
+                .fullDocument(FullDocument.UPDATE_LOOKUP)
+                .batchSize(batchSize)
+                .maxAwaitTime(maxAwait, TimeUnit.MILLISECONDS);
+        String resumeToken = syncStateRepository.findById(SYNC_STATE_ID).map(SyncStateEntity::getResumeToken).orElse(null);
+        if (resumeToken != null) {
+            changeStream = changeStream.resumeAfter(BsonDocument.parse(resumeToken));
+        }
+        return changeStream.cursor();
+    }
+
+    /**
+     * Adds the resource changed by the event to the batch, replacing a previous change on the same resource.
+     * Returns false if the event invalidates the stream, i.e. when the collection is dropped or renamed.
+     */
+    private boolean collect(ChangeStreamDocument<Document> event, Map<String, MockResourceEntity> batch) {
+        switch (event.getOperationType()) {
+            case INSERT, UPDATE, REPLACE -> {
+                String id = getDocumentId(event);
+                Document fullDocument = event.getFullDocument();
+
+                // the full document is read when the event is consumed, so it is missing if the resource was deleted in the meantime
+                batch.put(id, fullDocument != null ? mongoTemplate.getConverter().read(MockResourceEntity.class, fullDocument) : null);
+            }
+            case DELETE -> batch.put(getDocumentId(event), null);
+            case DROP, RENAME, DROP_DATABASE, INVALIDATE -> {
+                log.warn(String.format("The mock resource change stream was invalidated by a [%s] event, rebuilding the Redis keyspace from database.", event.getOperationType()));
+                restartRequested = true;
+                return false;
+            }
+            default -> log.debug(String.format("Ignoring the [%s] event on the mock resource change stream.", event.getOperationType()));
+        }
+        return true;
+    }
+
+    private void writeBatch(Map<String, MockResourceEntity> batch, BsonDocument resumeToken) {
+        // once the lease is expired another replica can tail the stream, so the batch may be older than its writes
+        if (Instant.now().isAfter(leaseUntil)) {
+            throw new LeaseLostException(String.format("the lease expired at [%s] before writing a batch", leaseUntil));
+        }
+        if (!batch.isEmpty()) {
+            mockResourceChangeService.append(batch.keySet());
+            List<RedisRepository.RedisWrite> writes = batch.entrySet().stream().map(change -> mockResourceSyncService.toWrite(change.getKey(), change.getValue())).toList();
+            batchTimer.record(() -> redisBatchPublisher.publishAllAndWait(writes));
+            publishedCounter.increment(batch.size());
+        }
+
+        // the token is stored only after the write, so a failed batch is read again from the stream
+        if (resumeToken != null) {
+            saveResumeToken(resumeToken.toJson());
+        }
+        mockResourceChangeBroadcaster.broadcast(batch.entrySet().stream().map(change -> mockResourceSyncService.toChangeEvent(change.getKey(), change.getValue())).toList());
+    }
+
+    private void restartFromNow() {
+        // the stream reopens from the current position, while the reconciliation publishes all the resources
+        // already stored and removes the ones deleted while the history was lost, recording them in the change log
+        saveResumeToken(null);
+        cacheWarmUpService.startWarmUp(true);
+    }
+
+    private void saveResumeToken(String resumeToken) {
+        // the token is stored only while holding the lease, so a replica that lost it cannot move the position back
+        Query query = Query.query(Criteria.where("id").is(SYNC_STATE_ID).and("owner").is(owner));
+        Update update = new Update().set("resumeToken", resumeToken).set("updatedAt", Instant.now());
+        if (mongoTemplate.updateFirst(query, update, SyncStateEntity.class).getMatchedCount() == 0) {
+            throw new LeaseLostException("the synchronization state is owned by another replica");
+        }
+    }
+
+    private boolean acquireLease() {
+        Instant now = Instant.now();
+        Query query = Query.query(Criteria.where("id").is(SYNC_STATE_ID).orOperator(
+                Criteria.where("owner").is(owner),
+                Criteria.where("leaseUntil").is(null),
+                Criteria.where("leaseUntil").lt(now)));
+        Update update = new Update().set("owner", owner).set("leaseUntil", now.plusMillis(lease));
+        try {
+            SyncStateEntity syncStateEntity = mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(true).upsert(true), SyncStateEntity.class);
+            if (syncStateEntity == null) {
+                return false;
+            }
+            leaseUntil = syncStateEntity.getLeaseUntil();
+            leaseRenewal = now.plusMillis(lease / 3);
+            return true;
+        } catch (DuplicateKeyException e) {
+            // the state exists and its lease is held by another replica, so the upsert tried to create it again
+            return false;
+        }
+    }
+
+    private void renewLease() {
+        if (Instant.now().isBefore(leaseRenewal)) {
+            return;
+        }
+        if (!acquireLease()) {
+            throw new LeaseLostException("the lease was acquired by another replica");
+        }
+    }
+
+    private void releaseLease() {
+        try {
+            mongoTemplate.updateFirst(
+                    Query.query(Criteria.where("id").is(SYNC_STATE_ID).and("owner").is(owner)),
+                    new Update().unset("owner").unset("leaseUntil"),
+                    SyncStateEntity.class);
+        } catch (Exception e) {
+            log.warn("The lease on the mock resource change stream was not released, it will be acquired by another replica after its expiration.", e);
+        }
+    }
+
+    private void handleFailure(Exception e) {
+        if (!running) {
+            return;
+        }
+        failedCounter.increment();
+        log.error(String.format("An error occurred while propagating the mock resource changes on Redis from the change stream. Retrying in [%d] ms.", retryInterval), e);
+        waitFor(retryInterval);
+    }
+
+    private void waitFor(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+
+    private static String getDocumentId(ChangeStreamDocument<Document> event) {
+        BsonValue id = event.getDocumentKey().get("_id");
+        return id.isString() ? id.asString().getValue() : id.toString();
+    }
+
+    private static class LeaseLostException extends RuntimeException {
+
+        private LeaseLostException(String message) {
+            super(message);
+        }
+    }
+}
@@ -5,44 +5,54 @@ import it.gov.pagopa.mocker.config.entity.MockRuleEntity;
 import it.gov.pagopa.mocker.config.entity.ScriptEntity;
 import it.gov.pagopa.mocker.config.exception.AppError;
 import it.gov.pagopa.mocker.config.exception.AppException;
+import it.gov.pagopa.mocker.config.model.enumeration.CountMode;
 import it.gov.pagopa.mocker.config.model.mockresource.*;
 import it.gov.pagopa.mocker.config.repository.MockResourceRepository;
 import it.gov.pagopa.mocker.config.repository.ScriptRepository;
+import it.gov.pagopa.mocker.config.repository.specification.PagedResult;
+import it.gov.pagopa.mocker.config.util.PageCursor;
 import it.gov.pagopa.mocker.config.util.Utility;
 import it.gov.pagopa.mocker.config.util.validation.RequestSemanticValidator;
 import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataAccessException;
-import org.springframework.data.domain.Page;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.function.Function;
 
 @Service
 @Slf4j
 @Transactional
 public class MockResourceService {
 
+    private static final int MAX_RULE_UPDATE_ATTEMPTS = 3;
+
     @Autowired
     private MockResourceRepository mockResourceRepository;
 
     @Autowired
     private ScriptRepository scriptRepository;
 
+    @Autowired
+    private MockResourceSyncService mockResourceSyncService;
+
     @Autowired
     private ModelMapper modelMapper;
 
-    public MockResourceList getMockResources(Pageable pageable, String name, String tag) {
+    public MockResourceList getMockResources(Pageable pageable, String cursor, String name, String tag, CountMode countMode) {
         List<MockResourceReduced> mockResources;
-        Page<MockResourceEntity> mockResourcePaginatedEntities;
+        PagedResult<MockResourceEntity> mockResourcePaginatedEntities;
+        PageCursor pageCursor = cursor != null ? PageCursor.decode(cursor) : null;
         try {
-            mockResourcePaginatedEntities = mockResourceRepository.findAll(pageable, name, tag);
-            mockResources = mockResourcePaginatedEntities.stream()
+            mockResourcePaginatedEntities = mockResourceRepository.findAll(pageable, pageCursor, name, tag, countMode);
+            mockResources = mockResourcePaginatedEntities.getContent().stream()
                     .map(mockResource -> modelMapper.map(mockResource, MockResourceReduced.class))
                     .toList();
         } catch (DataAccessException e) {
@@ -58,6 +68,7 @@ public class MockResourceService {
     public MockResource getMockResource(String id) {
         MockResource mockResource;
         try {
+            // read from the database, as the version is returned as ETag and must not be older than the stored one
             MockResourceEntity mockResourceEntity = mockResourceRepository.findById(id).orElseThrow(() -> new AppException(AppError.MOCK_RESOURCE_NOT_FOUND, id));
             mockResource = modelMapper.map(mockResourceEntity, MockResource.class);
             // setting detail about scripting info
@@ -85,14 +96,17 @@ public class MockResourceService {
             // check request semantic validity
             RequestSemanticValidator.validate(mockResource);
 
-            // Search if the resource already exists
-            String id = Utility.generateResourceId(mockResource);
-            mockResourceRepository.findById(id).ifPresent(res -> {
-                throw new AppException(AppError.MOCK_RESOURCE_CONFLICT, id);
-            });
-
-            // Persisting the mock resource
-            response = persistMockResource(mockResource);
+            // Persisting the mock resource, only if another one with the same identifier does not exist
+            MockResourceEntity mockResourceEntity = toMockResourceEntity(mockResource);
+            mockResourceEntity.setVersion(0L);
+            mockResourceSyncService.prepare(mockResourceEntity.getId());
+            try {
+                mockResourceEntity = mockResourceRepository.insert(mockResourceEntity);
+            } catch (DuplicateKeyException e) {
+                throw new AppException(AppError.MOCK_RESOURCE_CONFLICT, mockResourceEntity.getId());
+            }
+            mockResourceSyncService.publish(mockResourceEntity);
+            response = modelMapper.map(mockResourceEntity, MockResource.class);
 
         } catch (DataAccessException e) {
             log.error("An error occurred while trying to create a mock resource. ", e);
@@ -105,19 +119,12 @@ public class MockResourceService {
         MockResource response;
         try {
 
-            // Search if the resource exists
-            MockResourceEntity mockResourceEntity = mockResourceRepository.findById(resourceId).orElseThrow(() -> new AppException(AppError.MOCK_RESOURCE_NOT_FOUND, resourceId));
-
-            // Map mock rule to entity and then add to resource
-            MockRuleEntity mockRuleEntity = modelMapper.map(mockRule, MockRuleEntity.class);
-            mockResourceEntity.getRules().add(mockRuleEntity);
-
-            // check request semantic validity
-            MockResource mockResource = modelMapper.map(mockResourceEntity, MockResource.class);
-            RequestSemanticValidator.validate(mockResource);
-
-            // Persisting the mock resource
-            response = persistMockResource(mockResource);
+            // Add the rule to the resource, validating it against the rules already defined
+            response = updateRulesAtomically(resourceId, rulesSummary -> {
+                RequestSemanticValidator.validateNewRule(mockRule, rulesSummary);
+                MockRuleEntity mockRuleEntity = modelMapper.map(mockRule, MockRuleEntity.class);
+                return mockResourceRepository.pushRule(resourceId, rulesSummary.getVersion(), mockRuleEntity);
+            });
 
         } catch (DataAccessException e) {
             log.error("An error occurred while trying to create a mock rule. ", e);
@@ -126,7 +133,7 @@ public class MockResourceService {
         return response;
     }
 
-    public MockResource updateMockResource(String id, MockResource mockResource) {
+    public MockResource updateMockResource(String id, MockResource mockResource, String ifMatch) {
         MockResource response;
         try {
 
@@ -139,17 +146,16 @@ public class MockResourceService {
                 throw new AppException(AppError.MOCK_RESOURCE_BAD_REQUEST_INVALID_RESOURCE_ID, id, generatedId);
             }
 
-            // Search if the resource exists
+            // Search if the resource exists and is at the version required by the client
             MockResourceEntity mockResourceEntity = mockResourceRepository.findById(id).orElseThrow(() -> new AppException(AppError.MOCK_RESOURCE_NOT_FOUND, id));
             if (!isResourceURLNotChanged(mockResource, mockResourceEntity)) {
                 throw new AppException(AppError.MOCK_RESOURCE_BAD_REQUEST_INVALID_RESOURCE_URL, id, mockResourceEntity.getId());
             }
+            checkPrecondition(mockResourceEntity, ifMatch);
 
-            // delete the old resource, the new one will replace this resource
-            mockResourceRepository.delete(mockResourceEntity);
-
-            // Persisting the mock resource
-            response = persistMockResource(mockResource);
+            // Replace the old resource with the new one in a single write, so it is never seen as missing
+            MockResourceEntity newMockResourceEntity = toMockResourceEntity(mockResource);
+            response = replaceMockResource(newMockResourceEntity, mockResourceEntity.getVersion(), ifMatch);
 
         } catch (DataAccessException e) {
             log.error("An error occurred while trying to update a mock resource. ", e);
@@ -159,47 +165,58 @@ public class MockResourceService {
     }
 
     public MockResource updateMockRule(String resourceId, String ruleId, MockRule mockRule) {
-        MockResource response = null;
+        MockResource response;
         try {
-            // Search if the resource exists
-            MockResourceEntity mockResourceEntity = mockResourceRepository.findById(resourceId).orElseThrow(() -> new AppException(AppError.MOCK_RESOURCE_NOT_FOUND, resourceId));
-            MockRuleEntity mockRuleEntityToBeRemoved = mockResourceEntity.getRules().stream().filter(mockRuleEntity -> mockRuleEntity.getId().equals(ruleId)).findFirst().orElseThrow(() -> new AppException(AppError.MOCK_RULE_NOT_FOUND, ruleId, resourceId));
 
-            // replace the old rule with the new one and then order
-            MockRuleEntity mockRuleEntityToBeUpdated = modelMapper.map(mockRule, MockRuleEntity.class);
-            mockResourceEntity.getRules().remove(mockRuleEntityToBeRemoved);
-            mockResourceEntity.getRules().add(mockRuleEntityToBeUpdated);
-            mockResourceEntity.getRules().sort(Comparator.comparingInt(MockRuleEntity::getOrder));
+            // Replace the rule in the resource, validating it against the other rules already defined
+            mockRule.setId(ruleId);
+            response = updateRulesAtomically(resourceId, rulesSummary -> {
+                checkRuleExistence(rulesSummary, ruleId);
+                RequestSemanticValidator.validate(mockRule, rulesSummary);
+                MockRuleEntity mockRuleEntity = modelMapper.map(mockRule, MockRuleEntity.class);
+                return mockResourceRepository.replaceRule(resourceId, rulesSummary.getVersion(), mockRuleEntity);
+            });
 
-            // check request semantic validity
-            MockResource mockResource = modelMapper.map(mockResourceEntity, MockResource.class);
-            RequestSemanticValidator.validate(mockResource);
+        } catch (DataAccessException e) {
+            log.error("An error occurred while trying to update a mock rule. ", e);
+            throw new AppException(AppError.INTERNAL_SERVER_ERROR);
+        }
+        return response;
+    }
+
+    public MockResource deleteMockRule(String resourceId, String ruleId) {
+        MockResource response;
+        try {
 
-            // Persisting the mock resource
-            response = persistMockResource(mockResource);
+            // Remove the rule from the resource
+            response = updateRulesAtomically(resourceId, rulesSummary -> {
+                checkRuleExistence(rulesSummary, ruleId);
+                return mockResourceRepository.pullRule(resourceId, rulesSummary.getVersion(), ruleId);
+            });
 
         } catch (DataAccessException e) {
-            log.error("An error occurred while trying to create a mock rule. ", e);
+            log.error("An error occurred while trying to delete a mock rule. ", e);
             throw new AppException(AppError.INTERNAL_SERVER_ERROR);
         }
         return response;
     }
 
-    public MockResource updateMockResourceGeneralInfo(String id, MockResourceGeneralInfo mockResourceGeneralInfo) {
+    public MockResource updateMockResourceGeneralInfo(String id, MockResourceGeneralInfo mockResourceGeneralInfo, String ifMatch) {
         MockResource response;
         try {
 
-            // Search if the resource exists
+            // Search if the resource exists and is at the version required by the client
             MockResourceEntity mockResourceEntity = mockResourceRepository.findById(id).orElseThrow(() -> new AppException(AppError.MOCK_RESOURCE_NOT_FOUND, id));
+            checkPrecondition(mockResourceEntity, ifMatch);
+            Long currentVersion = mockResourceEntity.getVersion();
 
             // updating resource info
             mockResourceEntity.setName(mockResourceGeneralInfo.getName());
             mockResourceEntity.setIsActive(mockResourceGeneralInfo.getIsActive());
             mockResourceEntity.setTags(Set.copyOf(mockResourceGeneralInfo.getTags()));
 
-            // Save the converted resource
-            mockResourceEntity = mockResourceRepository.save(mockResourceEntity);
-            response = modelMapper.map(mockResourceEntity, MockResource.class);
+            // Replace the resource and publish it for Mocker
+            response = replaceMockResource(mockResourceEntity, currentVersion, ifMatch);
 
         } catch (DataAccessException e) {
             log.error("An error occurred while trying to update a mock resource. ", e);
@@ -211,22 +228,70 @@ public class MockResourceService {
     public void deleteMockResource(String id) {
         try {
             MockResourceEntity mockResourceEntity = mockResourceRepository.findById(id).orElseThrow(() -> new AppException(AppError.MOCK_RESOURCE_NOT_FOUND, id));
+            mockResourceSyncService.prepare(id);
             mockResourceRepository.delete(mockResourceEntity);
+            mockResourceSyncService.remove(mockResourceEntity);
         } catch (DataAccessException e) {
             log.error("An error occurred while trying to delete a mock resource. ", e);
             throw new AppException(AppError.INTERNAL_SERVER_ERROR);
         }
     }
 
-    private MockResource persistMockResource(MockResource mockResource) {
+    public MockResourceEntity toMockResourceEntity(MockResource mockResource) {
         // Map entity from input model, setting id and tags and completing the entities' tree
         MockResourceEntity mockResourceEntity = modelMapper.map(mockResource, MockResourceEntity.class);
         mockResourceEntity.setTags(Set.copyOf(mockResource.getTags()));
         mockResourceEntity.getRules().forEach(rule -> rule.setTags(Set.copyOf(rule.getTags())));
+        return mockResourceEntity;
+    }
+
+    private MockResource replaceMockResource(MockResourceEntity mockResourceEntity, Long currentVersion, String ifMatch) {
+        // Replace the resource only if it is not changed after the read, then publish it for Mocker
+        mockResourceEntity.setVersion(Optional.ofNullable(currentVersion).orElse(0L) + 1);
+        mockResourceSyncService.prepare(mockResourceEntity.getId());
+        MockResourceEntity replacedMockResourceEntity = mockResourceRepository.replace(mockResourceEntity, currentVersion);
+        if (replacedMockResourceEntity == null) {
+            throw ifMatch != null
+                    ? new AppException(AppError.MOCK_RESOURCE_PRECONDITION_FAILED, mockResourceEntity.getId(), ifMatch)
+                    : new AppException(AppError.MOCK_RESOURCE_CONCURRENT_UPDATE, mockResourceEntity.getId());
+        }
+        mockResourceSyncService.publish(replacedMockResourceEntity);
+        return modelMapper.map(replacedMockResourceEntity, MockResource.class);
+    }
+
+    private void checkPrecondition(MockResourceEntity mockResourceEntity, String ifMatch) {
+        if (!Utility.matchesETag(ifMatch, mockResourceEntity.getVersion())) {
+            throw new AppException(AppError.MOCK_RESOURCE_PRECONDITION_FAILED, mockResourceEntity.getId(), ifMatch);
+        }
+    }
+
+    private MockResource updateRulesAtomically(String resourceId, Function<MockResourceEntity, MockResourceEntity> rulesUpdate) {
+        for (int attempt = 0; attempt < MAX_RULE_UPDATE_ATTEMPTS; attempt++) {
+
+            // Search if the resource exists, reading only the data needed for validating the update
+            MockResourceEntity rulesSummary = mockResourceRepository.findRulesSummaryById(resourceId).orElseThrow(() -> new AppException(AppError.MOCK_RESOURCE_NOT_FOUND, resourceId));
 
-        // Save the converted resource
-        mockResourceEntity = mockResourceRepository.save(mockResourceEntity);
-        return modelMapper.map(mockResourceEntity, MockResource.class);
+            // Update the rules only if the resource is not changed after the read, otherwise retry on the new version.
+            // The change is registered only for an existing resource, as a record left for a missing one would be relayed as a removal
+            mockResourceSyncService.prepare(resourceId);
+            MockResourceEntity mockResourceEntity = rulesUpdate.apply(rulesSummary);
+            if (mockResourceEntity != null) {
+                mockResourceSyncService.publish(mockResourceEntity);
+                return modelMapper.map(mockResourceEntity, MockResource.class);
+            }
+            log.debug(String.format("The mock resource with id [%s] was changed while updating its rules, retrying.", resourceId));
+        }
+        throw new AppException(AppError.MOCK_RESOURCE_CONCURRENT_UPDATE, resourceId);
+    }
+
+    private void checkRuleExistence(MockResourceEntity rulesSummary, String ruleId) {
+        boolean ruleExists = Optional.ofNullable(rulesSummary.getRules())
+                .orElse(List.of())
+                .stream()
+                .anyMatch(mockRuleEntity -> mockRuleEntity.getId().equals(ruleId));
+        if (!ruleExists) {
+            throw new AppException(AppError.MOCK_RULE_NOT_FOUND, ruleId, rulesSummary.getId());
+        }
     }
 
     private boolean isResourceURLNotChanged(MockResource mockResource, MockResourceEntity mockResourceEntity) {
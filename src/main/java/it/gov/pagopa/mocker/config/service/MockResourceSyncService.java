@@ -0,0 +1,276 @@
+package it.gov.pagopa.mocker.config.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.gov.pagopa.mocker.config.entity.MockResourceEntity;
+import it.gov.pagopa.mocker.config.entity.MockRuleEntity;
+import it.gov.pagopa.mocker.config.entity.OutboxEntity;
+import it.gov.pagopa.mocker.config.model.enumeration.RedisSyncMode;
+import it.gov.pagopa.mocker.config.model.mockresource.MockResourceChangeEvent;
+import it.gov.pagopa.mocker.config.repository.MockResourceRepository;
+import it.gov.pagopa.mocker.config.repository.OutboxRepository;
+import it.gov.pagopa.mocker.config.repository.RedisBatchPublisher;
+import it.gov.pagopa.mocker.config.repository.RedisRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps the Redis keyspace read by Mocker aligned with the mock resources stored in MongoDB.
+ * Each resource is published as a compact snapshot under the key generated by
+ * {@link it.gov.pagopa.mocker.config.util.Utility#generateResourceId}, so that Mocker can resolve
+ * a request with a single GET instead of querying the database. The snapshots are written without
+ * expiration, as they are the copy of the stored resources read by Mocker and are removed when deleted.
+ * The changes are not written on Redis by the request threads: each change is registered in the outbox
+ * collection before writing the resource and marked as ready after the write. A relay drains the outbox
+ * in batches, publishing the current content of each changed resource through {@link RedisBatchPublisher},
+ * so a change is propagated at least once even if the process stops between the two writes.
+ * Each relay claims the records of a batch for a lease, so the replicas never relay the same change at the
+ * same time: otherwise a relay reading an older content could write it on Redis after a relay reading the
+ * newer one, leaving the key stale with no record left for correcting it.
+ * In CHANGE_STREAM mode the outbox is not used, as the changes are propagated by
+ * {@link MockResourceChangeStreamService}.
+ * Each change written on Redis is also pushed to the subscribed clients through {@link MockResourceChangeBroadcaster}.
+ */
+@Service
+@Slf4j
+public class MockResourceSyncService {
+
+    @Autowired
+    private RedisBatchPublisher redisBatchPublisher;
+
+    @Autowired
+    private MockResourceRepository mockResourceRepository;
+
+    @Autowired
+    private OutboxRepository outboxRepository;
+
+    @Autowired
+    private MockResourceChangeService mockResourceChangeService;
+
+    @Autowired
+    private MockResourceChangeBroadcaster mockResourceChangeBroadcaster;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${redis.sync.mode:OUTBOX}")
+    private RedisSyncMode syncMode;
+
+    @Value("${outbox.relay.batch-size:500}")
+    private int batchSize;
+
+    @Value("${outbox.relay.pending-timeout:30000}")
+    private long pendingTimeout;
+
+    @Value("${outbox.relay.lease:60000}")
+    private long lease;
+
+    private final AtomicLong relayLag = new AtomicLong();
+
+    private Counter relayedCounter;
+
+    private Counter failedCounter;
+
+    private Timer changeLagTimer;
+
+    private Timer batchTimer;
+
+    private DistributionSummary batchSizeSummary;
+
+    @PostConstruct
+    public void registerMetrics() {
+        relayedCounter = Counter.builder("mocker.outbox.relayed").description("Mock resource changes published on Redis by the outbox relay").register(meterRegistry);
+        failedCounter = Counter.builder("mocker.outbox.failed").description("Mock resource changes not published on Redis because of an error, to be retried").register(meterRegistry);
+        changeLagTimer = Timer.builder("mocker.outbox.change.lag").description("Time elapsed between the registration of a change and its publication on Redis").register(meterRegistry);
+        batchTimer = Timer.builder("mocker.outbox.batch").description("Time taken to write a pipelined batch on Redis").register(meterRegistry);
+        batchSizeSummary = DistributionSummary.builder("mocker.outbox.batch.size").description("Mock resource changes relayed in a batch").register(meterRegistry);
+        Gauge.builder("mocker.outbox.lag", relayLag, lag -> lag.get() / 1000.0).description("Age in seconds of the oldest change read by the last relay run").register(meterRegistry);
+    }
+
+    /**
+     * Registers in the outbox the change that is going to be made on the passed resources. This must be
+     * done before the change, so a failure here prevents the change.
+     */
+    public void prepare(Collection<String> ids) {
+        if (syncMode == RedisSyncMode.OUTBOX) {
+            outboxRepository.registerChanges(ids, false);
+        }
+    }
+
+    public void prepare(String id) {
+        prepare(List.of(id));
+    }
+
+    /**
+     * Marks the change made on the passed resource as ready to be relayed.
+     */
+    public void publish(MockResourceEntity mockResourceEntity) {
+        markReady(List.of(mockResourceEntity.getId()));
+    }
+
+    /**
+     * Marks the passed newly created resources as ready to be relayed.
+     */
+    public void publishAllCreated(List<MockResourceEntity> mockResourceEntities) {
+        markReady(mockResourceEntities.stream().map(MockResourceEntity::getId).toList());
+    }
+
+    /**
+     * Marks the removal of the passed resource as ready to be relayed.
+     */
+    public void remove(MockResourceEntity mockResourceEntity) {
+        markReady(List.of(mockResourceEntity.getId()));
+    }
+
+    /**
+     * Drains the outbox, publishing on Redis the changed resources in pipelined batches and removing
+     * from Redis the ones not found anymore in database. A batch not published is retried on the next run.
+     */
+    @Scheduled(fixedDelayString = "${outbox.relay.interval:200}")
+    public void relayChanges() {
+        if (syncMode != RedisSyncMode.OUTBOX) {
+            return;
+        }
+        List<OutboxEntity> outboxEntities;
+        do {
+            Instant now = Instant.now();
+            String claim = UUID.randomUUID().toString();
+            Instant leaseUntil = now.plusMillis(lease);
+            try {
+                outboxEntities = outboxRepository.claimRelayable(claim, now.minusMillis(pendingTimeout), leaseUntil, batchSize);
+            } catch (Exception e) {
+                log.error("An error occurred while trying to claim the mock resource changes from the outbox. ", e);
+                return;
+            }
+            relayLag.set(outboxEntities.isEmpty() ? 0 : Duration.between(outboxEntities.get(0).getUpdatedAt(), now).toMillis());
+            if (outboxEntities.isEmpty() || !relayBatch(claim, leaseUntil, outboxEntities)) {
+                return;
+            }
+        } while (outboxEntities.size() == batchSize);
+    }
+
+    /**
+     * Publishes on Redis the current content of the passed resources, removing the ones not found anymore
+     * in database, without registering a change. Used for correcting the keys written with a content read
+     * before a change, i.e. by the cache warm-up.
+     */
+    public void resync(Collection<String> ids) {
+        Map<String, MockResourceEntity> mockResourceEntities = readAll(ids);
+        redisBatchPublisher.publishAllAndWait(ids.stream().map(id -> toWrite(id, mockResourceEntities.get(id))).toList());
+    }
+
+    /**
+     * Returns the write on Redis of the passed resource, or of its removal if null.
+     */
+    public RedisRepository.RedisWrite toWrite(String id, MockResourceEntity mockResourceEntity) {
+        return mockResourceEntity != null
+                ? new RedisRepository.RedisWrite(id, generateSnapshot(mockResourceEntity))
+                : new RedisRepository.RedisWrite(id, null);
+    }
+
+    /**
+     * Returns the notification of the change of the passed resource, or of its removal if null.
+     */
+    public MockResourceChangeEvent toChangeEvent(String id, MockResourceEntity mockResourceEntity) {
+        return mockResourceEntity != null
+                ? MockResourceChangeEvent.builder()
+                        .id(id)
+                        .subsystem(mockResourceEntity.getSubsystemUrl())
+                        .version(Optional.ofNullable(mockResourceEntity.getVersion()).orElse(0L))
+                        .build()
+                : MockResourceChangeEvent.builder().id(id).deleted(true).build();
+    }
+
+    private Map<String, MockResourceEntity> readAll(Collection<String> ids) {
+        return mockResourceRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(MockResourceEntity::getId, Function.identity()));
+    }
+
+    private boolean relayBatch(String claim, Instant leaseUntil, List<OutboxEntity> outboxEntities) {
+        List<String> ids = outboxEntities.stream().map(OutboxEntity::getId).toList();
+        Map<String, MockResourceEntity> mockResourceEntities;
+        try {
+            mockResourceEntities = readAll(ids);
+            List<RedisRepository.RedisWrite> writes = ids.stream().map(id -> toWrite(id, mockResourceEntities.get(id))).toList();
+
+            // the change log is written before Redis, so the polling clients do not depend on its availability
+            mockResourceChangeService.append(ids);
+
+            // once the lease is expired another relay can claim the same records, so the read content may be stale
+            if (Instant.now().isAfter(leaseUntil)) {
+                throw new IllegalStateException(String.format("The lease on the outbox records expired at [%s] before writing on Redis", leaseUntil));
+            }
+            batchTimer.record(() -> redisBatchPublisher.publishAllAndWait(writes));
+            outboxRepository.removeRelayed(claim, outboxEntities);
+        } catch (Exception e) {
+            log.error(String.format("An error occurred while trying to relay a batch of [%d] mock resource changes on Redis. They will be retried.", ids.size()), e);
+            failedCounter.increment(ids.size());
+            releaseClaim(claim);
+            return false;
+        }
+        Instant relayedAt = Instant.now();
+        for (OutboxEntity outboxEntity : outboxEntities) {
+            changeLagTimer.record(Duration.between(outboxEntity.getUpdatedAt(), relayedAt));
+        }
+        relayedCounter.increment(ids.size());
+        batchSizeSummary.record(ids.size());
+        mockResourceChangeBroadcaster.broadcast(ids.stream().map(id -> toChangeEvent(id, mockResourceEntities.get(id))).toList());
+        return true;
+    }
+
+    private void releaseClaim(String claim) {
+        try {
+            outboxRepository.releaseClaim(claim);
+        } catch (Exception e) {
+            log.error("An error occurred while trying to release the claim on the outbox records. They will be relayed after the lease expiration.", e);
+        }
+    }
+
+    private void markReady(List<String> ids) {
+        if (syncMode != RedisSyncMode.OUTBOX) {
+            return;
+        }
+        try {
+            outboxRepository.registerChanges(ids, true);
+        } catch (Exception e) {
+            // the change is already stored, so its record not ready will be relayed after the pending timeout
+            log.error(String.format("An error occurred while trying to mark [%d] mock resource changes as ready in the outbox. They will be relayed after the pending timeout.", ids.size()), e);
+        }
+    }
+
+    public MockResourceEntity generateSnapshot(MockResourceEntity mockResourceEntity) {
+        // only the active rules are needed by Mocker, already sorted in the order they must be evaluated
+        List<MockRuleEntity> activeRules = Optional.ofNullable(mockResourceEntity.getRules())
+                .orElse(List.of())
+                .stream()
+                .filter(MockRuleEntity::isActive)
+                .sorted(Comparator.comparingInt(MockRuleEntity::getOrder))
+                .toList();
+        return MockResourceEntity.builder()
+                .id(mockResourceEntity.getId())
+                .name(mockResourceEntity.getName())
+                .subsystemUrl(mockResourceEntity.getSubsystemUrl())
+                .resourceUrl(mockResourceEntity.getResourceUrl())
+                .httpMethod(mockResourceEntity.getHttpMethod())
+                .specialHeaders(mockResourceEntity.getSpecialHeaders())
+                .isActive(mockResourceEntity.getIsActive())
+                .archetypeId(mockResourceEntity.getArchetypeId())
+                .tags(mockResourceEntity.getTags())
+                .rules(activeRules)
+                .build();
+    }
+}
@@ -24,4 +24,9 @@ public class Constants {
   public static final String EMPTY_STRING = "";
 
   public static final String WHITESPACE = " ";
+
+  public static final String MOCK_RESOURCE_CHANGE_CHANNEL = "mocker-config:mock-resource-changes";
+
+  // the mock resources are stored on Redis under their identifier, an hexadecimal MD5 digest
+  public static final String MOCK_RESOURCE_KEY_PATTERN = "[0-9a-f]".repeat(32);
 }
@@ -17,66 +17,135 @@ import org.apache.commons.lang3.tuple.ImmutableTriple;
 import org.apache.commons.lang3.tuple.Triple;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
 
 @SuppressWarnings({"unchecked", "rawtypes"})
 @Slf4j
 public class OpenAPIExtractor {
 
+    private static final int PENDING_PATHS_PER_WORKER = 4;
+
     private OpenAPIExtractor() {}
 
     public static List<ArchetypeEntity> extractArchetype(OpenAPI openAPI, String subsystem) {
         List<ArchetypeEntity> archetypeEntities = new LinkedList<>();
+        extractArchetype(openAPI, subsystem, extractedArchetype -> archetypeEntities.add(extractedArchetype.archetype()));
+        return archetypeEntities;
+    }
 
-        Map<String, Map<String, Schema>> rawClasses = getClassesStructure(openAPI);
+    /**
+     * Extracts the archetypes from the passed OpenAPI, handing each one to the consumer as soon as it is
+     * generated, so that the caller can process them while the paths are still being walked.
+     */
+    public static void extractArchetype(OpenAPI openAPI, String subsystem, Consumer<ExtractedArchetype> archetypeConsumer) {
+        SchemaTemplates templates = new SchemaTemplates(getClassesStructure(openAPI));
 
         // start with the analysis of the PathItem, i.e. the APIs categorized by path string
         Paths paths = openAPI.getPaths();
         for (Map.Entry<String, PathItem> entry : paths.entrySet()) {
+            extractArchetypesFromPath(entry.getKey(), entry.getValue(), subsystem, templates).forEach(archetypeConsumer);
+        }
+    }
 
-            /* extracting a set of APIs from the same path. From this moment, it is possible to have
-               GET, PUT, POST, DELETE and other APIs that have the same path.
-             */
-            Map<String, Operation> operations = getOperations(entry.getValue());
-            for (Map.Entry<String, Operation> operationEntry : operations.entrySet()) {
-
-                // extracting information about the operation under analysis
-                Operation operation = operationEntry.getValue();
-                HttpMethod operationHTTPMethod = HttpMethod.valueOf(operationEntry.getKey());
-
-                // generating the archetype identifier as a UUID string
-                String archetypeId = Utility.generateUUID();
-
-                // defining the archetype entity structure
-                List<ArchetypeParameterEntity> parameterEntities = new LinkedList<>();
-                List<ArchetypeResponseEntity> responseEntities = new LinkedList<>();
-                ArchetypeEntity archetypeEntity = ArchetypeEntity.builder()
-                        .id(archetypeId)
-                        .name(operation.getSummary())
-                        .subsystemUrl(subsystem)
-                        .resourceUrl(entry.getKey())
-                        .httpMethod(operationHTTPMethod)
-                        .parameters(parameterEntities)
-                        .responses(responseEntities)
-                        .tags(extractTagsFromOperation(operation))
-                        .build();
-
-                // defining the archetype tags
-                parameterEntities.addAll(extractParametersFromOperation(operation, archetypeEntity));
-
-                // defining the response for the archetype, one for each HTTP Status code expecred for the resource
-                responseEntities.addAll(extractResponsesFromOperation(operation, rawClasses, archetypeEntity));
-
-                // add the generated archetype on the list to be returned as result
-                archetypeEntities.add(archetypeEntity);
+    /**
+     * Extracts the archetypes as {@link #extractArchetype(OpenAPI, String, Consumer)} does, analyzing the
+     * paths in parallel on the passed pool. The archetypes are handed to the consumer, on the calling
+     * thread, in the same order of the sequential extraction. At most a few paths per worker are
+     * analyzed ahead of the consumer, so the memory used does not depend on the size of the OpenAPI.
+     */
+    public static void extractArchetype(OpenAPI openAPI, String subsystem, Consumer<ExtractedArchetype> archetypeConsumer, ForkJoinPool pool) {
+        SchemaTemplates templates = new SchemaTemplates(getClassesStructure(openAPI));
+        int maxPendingPaths = pool.getParallelism() * PENDING_PATHS_PER_WORKER;
+        Deque<ForkJoinTask<List<ExtractedArchetype>>> pendingPaths = new ArrayDeque<>(maxPendingPaths);
+        try {
+            for (Map.Entry<String, PathItem> entry : openAPI.getPaths().entrySet()) {
+
+                // consuming the oldest path before submitting a new one, keeping the extraction order
+                if (pendingPaths.size() == maxPendingPaths) {
+                    pendingPaths.poll().join().forEach(archetypeConsumer);
+                }
+                pendingPaths.add(pool.submit(() -> extractArchetypesFromPath(entry.getKey(), entry.getValue(), subsystem, templates)));
+            }
+            while (!pendingPaths.isEmpty()) {
+                pendingPaths.poll().join().forEach(archetypeConsumer);
             }
+        } finally {
+            pendingPaths.forEach(task -> task.cancel(true));
         }
+    }
 
-        return archetypeEntities;
+    private static List<ExtractedArchetype> extractArchetypesFromPath(String path, PathItem pathItem, String subsystem, SchemaTemplates templates) {
+        List<ExtractedArchetype> extractedArchetypes = new LinkedList<>();
+
+        /* extracting a set of APIs from the same path. From this moment, it is possible to have
+           GET, PUT, POST, DELETE and other APIs that have the same path.
+         */
+        Map<String, Operation> operations = getOperations(pathItem);
+        for (Map.Entry<String, Operation> operationEntry : operations.entrySet()) {
+
+            // extracting information about the operation under analysis
+            Operation operation = operationEntry.getValue();
+            HttpMethod operationHTTPMethod = HttpMethod.valueOf(operationEntry.getKey());
+
+            // generating the archetype identifier as a UUID string
+            String archetypeId = Utility.generateUUID();
+
+            // defining the archetype entity structure
+            List<ArchetypeParameterEntity> parameterEntities = new LinkedList<>();
+            List<ArchetypeResponseEntity> responseEntities = new LinkedList<>();
+            List<ArchetypeSchemaEntity> schemaEntities = new LinkedList<>();
+            ArchetypeEntity archetypeEntity = ArchetypeEntity.builder()
+                    .id(archetypeId)
+                    .name(operation.getSummary())
+                    .subsystemUrl(subsystem)
+                    .resourceUrl(path)
+                    .httpMethod(operationHTTPMethod)
+                    .parameters(parameterEntities)
+                    .responses(responseEntities)
+                    .tags(extractTagsFromOperation(operation))
+                    .build();
+
+            // defining the archetype tags
+            parameterEntities.addAll(extractParametersFromOperation(operation, archetypeEntity));
+
+            // defining the response for the archetype, one for each HTTP Status code expecred for the resource
+            responseEntities.addAll(extractResponsesFromOperation(operation, templates, archetypeEntity, schemaEntities));
+
+            // defining the fingerprint used for detecting the changes of the operation in a re-import
+            archetypeEntity.setFingerprint(generateFingerprint(archetypeEntity));
+
+            // add the generated archetype, with the schemas referenced by its responses, on the list to be returned as result
+            extractedArchetypes.add(new ExtractedArchetype(archetypeEntity, schemaEntities));
+        }
+
+        return extractedArchetypes;
+    }
+
+    private static String generateFingerprint(ArchetypeEntity archetypeEntity) {
+        // the generated identifiers are excluded, so the same operation always has the same fingerprint
+        StringBuilder stringBuilder = new StringBuilder()
+                .append(archetypeEntity.getHttpMethod()).append('\n')
+                .append(archetypeEntity.getResourceUrl()).append('\n')
+                .append(archetypeEntity.getName()).append('\n')
+                .append(archetypeEntity.getTags());
+        for (ArchetypeParameterEntity parameterEntity : archetypeEntity.getParameters()) {
+            stringBuilder.append("\nparameter ").append(parameterEntity.getName()).append(':').append(parameterEntity.getType());
+        }
+        for (ArchetypeResponseEntity responseEntity : archetypeEntity.getResponses()) {
+            stringBuilder.append("\nresponse ").append(responseEntity.getStatus()).append(':').append(responseEntity.getSchemaId());
+            for (ArchetypeResponseHeaderEntity headerEntity : responseEntity.getHeaders()) {
+                stringBuilder.append(' ').append(headerEntity.getHeader()).append('=').append(headerEntity.getValue());
+            }
+        }
+        return Utility.generateContentHash(stringBuilder.toString());
     }
 
     private static Map<String, Operation> getOperations(PathItem item) {
         Operation operation;
-        Map<String, Operation> entries = new HashMap<>();
+        Map<String, Operation> entries = new LinkedHashMap<>();
         if ((operation = item.getGet()) != null) {
             entries.put("GET", operation);
         }
@@ -155,7 +224,7 @@ public class OpenAPIExtractor {
         return parameterEntities;
     }
 
-    private static List<ArchetypeResponseEntity> extractResponsesFromOperation(Operation operation, Map<String, Map<String, Schema>> rawClasses, ArchetypeEntity archetypeEntity) {
+    private static List<ArchetypeResponseEntity> extractResponsesFromOperation(Operation operation, SchemaTemplates templates, ArchetypeEntity archetypeEntity, List<ArchetypeSchemaEntity> schemaEntities) {
         List<ArchetypeResponseEntity> responseEntities = new LinkedList<>();
 
         // defining the response for the archetype, one for each HTTP Status code expected for the resource
@@ -164,17 +233,22 @@ public class OpenAPIExtractor {
             // extracting the response
             List<ArchetypeResponseHeaderEntity> responseHeaderEntities = new LinkedList<>();
             ApiResponse response = responseEntry.getValue();
-            Triple<String, String, String> content = extractBodyContentFromReferencedClass(response, rawClasses);
+            Triple<String, String, String> content = extractBodyContentFromReferencedClass(response, templates);
 
-            // generate the archetype schema
+            // generate the archetype schema, identified by its content so that the same structure is stored only once per subsystem
             ArchetypeSchemaEntity archetypeSchema = null;
             if (content.getRight() != null) {
-                archetypeSchema = ArchetypeSchemaEntity.builder()
-                        .id(Utility.generateUUID())
-                        .name(content.getMiddle()) // class name
-                        .subsystem(archetypeEntity.getSubsystemUrl())
-                        .content(content.getRight()) // class structure
-                        .build();
+                archetypeSchema = templates.schemas.computeIfAbsent(content.getRight(), schemaContent -> {
+                    String contentHash = Utility.generateContentHash(schemaContent);
+                    return ArchetypeSchemaEntity.builder()
+                            .id(Utility.generateHash(archetypeEntity.getSubsystemUrl(), contentHash))
+                            .name(content.getMiddle()) // class name
+                            .subsystem(archetypeEntity.getSubsystemUrl())
+                            .hash(contentHash)
+                            .content(schemaContent) // class structure
+                            .build();
+                });
+                schemaEntities.add(archetypeSchema);
             }
 
             // generate archetype response
@@ -218,7 +292,7 @@ public class OpenAPIExtractor {
         return headerEntities;
     }
 
-    private static Triple<String, String, String> extractBodyContentFromReferencedClass(ApiResponse apiResponse, Map<String, Map<String, Schema>> rawClasses) {
+    private static Triple<String, String, String> extractBodyContentFromReferencedClass(ApiResponse apiResponse, SchemaTemplates templates) {
         String schemaName = null;
         String bodyContent = apiResponse.get$ref();
         String contentType = "";
@@ -235,13 +309,13 @@ public class OpenAPIExtractor {
 
                     // generate the JSON response body
                     case "application/json":
-                        bodyContent = extractJSONFromReferencedClass(contentMediaTypeEntry.getValue(), rawClasses);
+                        bodyContent = extractJSONFromReferencedClass(contentMediaTypeEntry.getValue(), templates);
                         schemaName = getClassNameFromReference(schema != null ? Optional.ofNullable(schema.get$ref()).orElse(schema.getType()) : "");
                         break;
 
                     // generate the JSON response body
                     case "application/xml", "text/xml":
-                        bodyContent = extractXMLFromReferencedClass(contentMediaTypeEntry.getValue(), rawClasses);
+                        bodyContent = extractXMLFromReferencedClass(contentMediaTypeEntry.getValue(), templates);
                         schemaName = getClassNameFromReference(schema != null ? Optional.ofNullable(schema.get$ref()).orElse(schema.getType()) : "");
                         break;
 
@@ -262,7 +336,7 @@ public class OpenAPIExtractor {
         return new ImmutableTriple<>(contentType, schemaName, bodyContent);
     }
 
-    private static String extractJSONFromReferencedClass(MediaType contentMediaType, Map<String, Map<String, Schema>> rawClasses) {
+    private static String extractJSONFromReferencedClass(MediaType contentMediaType, SchemaTemplates templates) {
         String bodyContent = null;
         Schema schema = contentMediaType.getSchema();
         if (schema != null) {
@@ -270,7 +344,7 @@ public class OpenAPIExtractor {
             // get class reference: if it exists, get the class and convert it to a valid JSON content
             String className = schema.get$ref();
             if (className != null) {
-                String plainContent = convertRawClassToJSON(rawClasses, className.substring(className.lastIndexOf("/") + 1), null);
+                String plainContent = convertRawClassToJSON(templates, className.substring(className.lastIndexOf("/") + 1), null, new HashMap<>()).content();
                 bodyContent = Base64.getEncoder().encodeToString(plainContent.getBytes());
             } else {
                 bodyContent = Base64.getEncoder().encodeToString("${content}".getBytes());
@@ -279,7 +353,7 @@ public class OpenAPIExtractor {
         return bodyContent;
     }
 
-    private static String extractXMLFromReferencedClass(MediaType contentMediaType, Map<String, Map<String, Schema>> rawClasses) {
+    private static String extractXMLFromReferencedClass(MediaType contentMediaType, SchemaTemplates templates) {
         String bodyContent = null;
         Schema schema = contentMediaType.getSchema();
         if (schema != null) {
@@ -287,7 +361,7 @@ public class OpenAPIExtractor {
             // get class reference: if it exists, get the class and convert it to a valid JSON content
             String className = schema.get$ref();
             if (className != null) {
-                String plainContent = convertRawClassToXML(rawClasses, className.substring(className.lastIndexOf("/") + 1));
+                String plainContent = convertRawClassToXML(templates, className.substring(className.lastIndexOf("/") + 1), new HashMap<>()).content();
                 bodyContent = Base64.getEncoder().encodeToString(plainContent.getBytes());
             } else {
                 bodyContent = Base64.getEncoder().encodeToString("${content}".getBytes());
@@ -296,146 +370,203 @@ public class OpenAPIExtractor {
         return bodyContent;
     }
 
-    private static String convertRawClassToJSON(Map<String, Map<String, Schema>> rawClasses, String className, String parameterName) {
+    private static Template convertRawClassToJSON(SchemaTemplates templates, String className, String parameterName, Map<String, Integer> renderingClasses) {
 
-        StringBuilder stringBuilder = new StringBuilder();
+        // get raw class from passed class name: if not exists, it is a primitive object
+        Map<String, Schema> rawClass = templates.rawClasses.get(className);
+        if (rawClass == null) {
 
-        // get raw class from passed class name: if exists, execute the conversion
-        Map<String, Schema> rawClass = rawClasses.get(className);
-        if (rawClass != null) {
+            // this one is included when there is an array of primitive objects
+            return Template.complete("string".equals(className) ? "\"${" + parameterName + "}\"" : "${" + parameterName + "}");
+        }
 
-            // JSON starting charachter
-            stringBuilder.append("{");
+        // the template of a class does not depend on the parameter that references it, so it is rendered only once per import
+        TemplateKey templateKey = new TemplateKey(TemplateFormat.JSON, className);
+        String renderedTemplate = templates.rendered.get(templateKey);
+        if (renderedTemplate != null) {
+            return Template.complete(renderedTemplate);
+        }
 
-            List<Map.Entry<String, Schema>> orderedParameters = new ArrayList<>(rawClass.entrySet());
-            orderedParameters.sort(Map.Entry.comparingByKey());
-            Iterator<Map.Entry<String, Schema>> it = orderedParameters.iterator();
-            while (it.hasNext()) {
-                Map.Entry<String, Schema> entry = it.next();
+        // a class already in rendering references itself, directly or not: the cycle is cut with an empty object
+        Integer cycleDepth = renderingClasses.get(className);
+        if (cycleDepth != null) {
+            return new Template("{}", cycleDepth);
+        }
+        int depth = renderingClasses.size();
+        renderingClasses.put(className, depth);
+        int lowestCycleDepth = Integer.MAX_VALUE;
 
-                // extracted needed parameters
-                String entryParameterName = entry.getKey();
-                Schema classSchema = entry.getValue();
+        StringBuilder stringBuilder = new StringBuilder();
 
-                // extract and insert the parameter name (left section of the parameter)
-                stringBuilder.append("\"").append(entryParameterName).append("\": ");
+        // JSON starting charachter
+        stringBuilder.append("{");
 
-                // construct the correct object from the nested schema type
-                String type = classSchema.getType();
+        List<Map.Entry<String, Schema>> orderedParameters = new ArrayList<>(rawClass.entrySet());
+        orderedParameters.sort(Map.Entry.comparingByKey());
+        Iterator<Map.Entry<String, Schema>> it = orderedParameters.iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Schema> entry = it.next();
 
-                if (type != null) {
-                    switch (type) {
+            // extracted needed parameters
+            String entryParameterName = entry.getKey();
+            Schema classSchema = entry.getValue();
 
-                        // if type of the nested schema is an array, extract the JSON object recursively and encapsulate it in squared brackets
-                        case "array":
-                            stringBuilder.append("[").append(convertRawClassToJSON(rawClasses, getNestedClassNameFromSchema(classSchema), entryParameterName)).append("]");
-                            break;
+            // extract and insert the parameter name (left section of the parameter)
+            stringBuilder.append("\"").append(entryParameterName).append("\": ");
 
-                        // if type of the nested schema is a string, set the parameter name as injectable parameter included in " characters
-                        case "string":
-                            stringBuilder.append("\"").append("${").append(entryParameterName).append("}\"");
-                            break;
+            // construct the correct object from the nested schema type
+            String type = classSchema.getType();
+            Template nestedTemplate = null;
 
-                        // if type of the nested schema is a primitive type (integer, boolean, etc), set the parameter name as injectable parameter but not included in " characters
-                        default:
-                            stringBuilder.append("${").append(entryParameterName).append("}");
-                            break;
-                    }
-                }
+            if (type != null) {
+                switch (type) {
 
-                // if the nested schema is a complex type, extract the JSON object recursively
-                else if (classSchema.getItems() != null) {
-                    stringBuilder.append(convertRawClassToJSON(rawClasses, getNestedClassNameFromSchema(classSchema), entryParameterName));
-                }
+                    // if type of the nested schema is an array, extract the JSON object recursively and encapsulate it in squared brackets
+                    case "array":
+                        nestedTemplate = convertRawClassToJSON(templates, getNestedClassNameFromSchema(classSchema), entryParameterName, renderingClasses);
+                        stringBuilder.append("[").append(nestedTemplate.content()).append("]");
+                        break;
 
-                // if the nested schema is a complex type referenced directly to object, extract the JSON object recursively
-                else if (classSchema.get$ref() != null) {
-                    stringBuilder.append(convertRawClassToJSON(rawClasses, getClassNameFromReference(classSchema.get$ref()), entryParameterName));
-                }
+                    // if type of the nested schema is a string, set the parameter name as injectable parameter included in " characters
+                    case "string":
+                        stringBuilder.append("\"").append("${").append(entryParameterName).append("}\"");
+                        break;
 
-                // add comma if not last parameter
-                if (it.hasNext()) {
-                    stringBuilder.append(", ");
+                    // if type of the nested schema is a primitive type (integer, boolean, etc), set the parameter name as injectable parameter but not included in " characters
+                    default:
+                        stringBuilder.append("${").append(entryParameterName).append("}");
+                        break;
                 }
             }
 
-            // JSON ending charachter
-            stringBuilder.append("}");
-        }
+            // if the nested schema is a complex type, extract the JSON object recursively
+            else if (classSchema.getItems() != null) {
+                nestedTemplate = convertRawClassToJSON(templates, getNestedClassNameFromSchema(classSchema), entryParameterName, renderingClasses);
+                stringBuilder.append(nestedTemplate.content());
+            }
 
-        // this one is included when there is an array of primitive objects
-        else {
-            if ("string".equals(className)) {
-                stringBuilder.append("\"${").append(parameterName).append("}\"");
-            } else {
-                stringBuilder.append("${").append(parameterName).append("}");
+            // if the nested schema is a complex type referenced directly to object, extract the JSON object recursively
+            else if (classSchema.get$ref() != null) {
+                nestedTemplate = convertRawClassToJSON(templates, getClassNameFromReference(classSchema.get$ref()), entryParameterName, renderingClasses);
+                stringBuilder.append(nestedTemplate.content());
+            }
+
+            if (nestedTemplate != null) {
+                lowestCycleDepth = Math.min(lowestCycleDepth, nestedTemplate.cycleDepth());
+            }
+
+            // add comma if not last parameter
+            if (it.hasNext()) {
+                stringBuilder.append(", ");
             }
         }
-        return stringBuilder.toString();
+
+        // JSON ending charachter
+        stringBuilder.append("}");
+
+        renderingClasses.remove(className);
+        return completeTemplate(templates, templateKey, stringBuilder.toString(), depth, lowestCycleDepth);
     }
 
-    private static String convertRawClassToXML(Map<String, Map<String, Schema>> rawClasses, String className) {
+    private static Template convertRawClassToXML(SchemaTemplates templates, String className, Map<String, Integer> renderingClasses) {
 
-        StringBuilder stringBuilder = new StringBuilder();
+        // get raw class from passed class name: if not exists, no content can be generated
+        Map<String, Schema> rawClass = templates.rawClasses.get(className);
+        if (rawClass == null) {
+            return Template.complete("");
+        }
 
-        // get raw class from passed class name: if exists, execute the conversion
-        Map<String, Schema> rawClass = rawClasses.get(className);
-        if (rawClass != null) {
+        // the template of a class is rendered only once per import
+        TemplateKey templateKey = new TemplateKey(TemplateFormat.XML, className);
+        String renderedTemplate = templates.rendered.get(templateKey);
+        if (renderedTemplate != null) {
+            return Template.complete(renderedTemplate);
+        }
 
-            // XML starting character
-            stringBuilder.append("<").append(className).append(">");
+        // a class already in rendering references itself, directly or not: the cycle is cut with an empty element
+        Integer cycleDepth = renderingClasses.get(className);
+        if (cycleDepth != null) {
+            return new Template("<" + className + "/>", cycleDepth);
+        }
+        int depth = renderingClasses.size();
+        renderingClasses.put(className, depth);
+        int lowestCycleDepth = Integer.MAX_VALUE;
 
-            List<Map.Entry<String, Schema>> orderedParameters = new ArrayList<>(rawClass.entrySet());
-            orderedParameters.sort(Map.Entry.comparingByKey());
-            Iterator<Map.Entry<String, Schema>> it = orderedParameters.iterator();
-            while (it.hasNext()) {
-                Map.Entry<String, Schema> entry = it.next();
+        StringBuilder stringBuilder = new StringBuilder();
 
-                // extracted needed parameters
-                String parameterName = entry.getKey();
-                Schema classSchema = entry.getValue();
+        // XML starting character
+        stringBuilder.append("<").append(className).append(">");
 
-                // extract and insert the parameter name (left section of the parameter)
-                stringBuilder.append("<").append(parameterName).append(">");
+        List<Map.Entry<String, Schema>> orderedParameters = new ArrayList<>(rawClass.entrySet());
+        orderedParameters.sort(Map.Entry.comparingByKey());
+        Iterator<Map.Entry<String, Schema>> it = orderedParameters.iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Schema> entry = it.next();
 
-                // construct the correct object from the nested schema type
-                String type = classSchema.getType();
+            // extracted needed parameters
+            String parameterName = entry.getKey();
+            Schema classSchema = entry.getValue();
 
-                if (type != null) {
-                    switch (type) {
+            // extract and insert the parameter name (left section of the parameter)
+            stringBuilder.append("<").append(parameterName).append(">");
 
-                        // if type of the nested schema is an array, extract the JSON object recursively and encapsulate it in squared brackets
-                        case "array":
-                            stringBuilder.append("<").append(parameterName).append(">")
-                                    .append(convertRawClassToXML(rawClasses, getNestedClassNameFromSchema(classSchema)))
-                                    .append("</").append(parameterName).append(">");
-                            break;
+            // construct the correct object from the nested schema type
+            String type = classSchema.getType();
+            Template nestedTemplate = null;
 
-                        // if type of the nested schema is a primitive type (integer, boolean, etc), set the parameter name as injectable parameter but not included in " characters
-                        default:
-                            stringBuilder.append("${").append(parameterName).append("}");
-                            break;
-                    }
-                }
+            if (type != null) {
+                switch (type) {
 
-                // if the nested schema is a complex type, extract the JSON object recursively
-                else if (classSchema.getItems() != null) {
-                    stringBuilder.append(convertRawClassToXML(rawClasses, getNestedClassNameFromSchema(classSchema)));
-                }
+                    // if type of the nested schema is an array, extract the JSON object recursively and encapsulate it in squared brackets
+                    case "array":
+                        nestedTemplate = convertRawClassToXML(templates, getNestedClassNameFromSchema(classSchema), renderingClasses);
+                        stringBuilder.append("<").append(parameterName).append(">")
+                                .append(nestedTemplate.content())
+                                .append("</").append(parameterName).append(">");
+                        break;
 
-                // if the nested schema is a complex type referenced directly to object, extract the JSON object recursively
-                else if (classSchema.get$ref() != null) {
-                    stringBuilder.append(convertRawClassToXML(rawClasses, getClassNameFromReference(classSchema.get$ref())));
+                    // if type of the nested schema is a primitive type (integer, boolean, etc), set the parameter name as injectable parameter but not included in " characters
+                    default:
+                        stringBuilder.append("${").append(parameterName).append("}");
+                        break;
                 }
+            }
+
+            // if the nested schema is a complex type, extract the JSON object recursively
+            else if (classSchema.getItems() != null) {
+                nestedTemplate = convertRawClassToXML(templates, getNestedClassNameFromSchema(classSchema), renderingClasses);
+                stringBuilder.append(nestedTemplate.content());
+            }
 
-                // add comma if not last parameter
-                stringBuilder.append("</").append(parameterName).append(">");
+            // if the nested schema is a complex type referenced directly to object, extract the JSON object recursively
+            else if (classSchema.get$ref() != null) {
+                nestedTemplate = convertRawClassToXML(templates, getClassNameFromReference(classSchema.get$ref()), renderingClasses);
+                stringBuilder.append(nestedTemplate.content());
             }
 
-            // JSON ending charachter
-            stringBuilder.append("</").append(className).append(">");
+            if (nestedTemplate != null) {
+                lowestCycleDepth = Math.min(lowestCycleDepth, nestedTemplate.cycleDepth());
+            }
+
+            // add comma if not last parameter
+            stringBuilder.append("</").append(parameterName).append(">");
         }
-        return stringBuilder.toString();
+
+        // JSON ending charachter
+        stringBuilder.append("</").append(className).append(">");
+
+        renderingClasses.remove(className);
+        return completeTemplate(templates, templateKey, stringBuilder.toString(), depth, lowestCycleDepth);
+    }
+
+    private static Template completeTemplate(SchemaTemplates templates, TemplateKey templateKey, String content, int depth, int lowestCycleDepth) {
+        // a template whose cycles are all closed inside it is the same wherever the class is referenced, so it can be reused.
+        // Otherwise, it depends on the classes in rendering above it and it is not stored
+        if (lowestCycleDepth < depth) {
+            return new Template(content, lowestCycleDepth);
+        }
+        templates.rendered.put(templateKey, content);
+        return Template.complete(content);
     }
 
     private static String getNestedClassNameFromSchema(Schema schema) {
@@ -448,4 +579,45 @@ public class OpenAPIExtractor {
     private static String getClassNameFromReference(String reference) {
         return reference.contains("/") ? reference.substring(reference.lastIndexOf("/") + 1) : reference;
     }
+
+    /**
+     * An archetype extracted from the OpenAPI, with the schemas referenced by its responses.
+     */
+    public record ExtractedArchetype(ArchetypeEntity archetype, List<ArchetypeSchemaEntity> schemas) {
+    }
+
+    private enum TemplateFormat {
+        JSON,
+        XML
+    }
+
+    private record TemplateKey(TemplateFormat format, String className) {
+    }
+
+    /**
+     * A rendered template, with the depth of the outermost class in rendering on which one of its cycles was cut.
+     */
+    private record Template(String content, int cycleDepth) {
+
+        static Template complete(String content) {
+            return new Template(content, Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * The classes defined in an OpenAPI, with the templates and the schemas already generated from them. It is shared by
+     * all the paths extracted from the same OpenAPI, also when they are extracted in parallel.
+     */
+    private static final class SchemaTemplates {
+
+        private final Map<String, Map<String, Schema>> rawClasses;
+
+        private final Map<TemplateKey, String> rendered = new ConcurrentHashMap<>();
+
+        private final Map<String, ArchetypeSchemaEntity> schemas = new ConcurrentHashMap<>();
+
+        private SchemaTemplates(Map<String, Map<String, Schema>> rawClasses) {
+            this.rawClasses = rawClasses;
+        }
+    }
 }
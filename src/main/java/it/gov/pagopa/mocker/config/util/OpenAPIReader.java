@@ -0,0 +1,54 @@
+package it.gov.pagopa.mocker.config.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.swagger.parser.OpenAPIParser;
+import io.swagger.v3.core.util.Json;
+import io.swagger.v3.core.util.Yaml;
+import io.swagger.v3.parser.OpenAPIV3Parser;
+import io.swagger.v3.parser.core.models.SwaggerParseResult;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+public class OpenAPIReader {
+
+    private static final int FORMAT_DETECTION_LIMIT = 1024;
+
+    private OpenAPIReader() {}
+
+    /**
+     * Parses an OpenAPI document (JSON or YAML) directly from the passed stream, without reading
+     * it as a whole in a string before the parsing. Only the Swagger 2.0 documents, which must be
+     * converted, are passed as string to the parser.
+     */
+    public static SwaggerParseResult read(InputStream inputStream) throws IOException {
+        BufferedInputStream bufferedInputStream = new BufferedInputStream(inputStream);
+        JsonNode rootNode = getMapper(bufferedInputStream).readTree(bufferedInputStream);
+        if (rootNode == null || !rootNode.isObject()) {
+            throw new IOException("The passed content is not a valid OpenAPI document.");
+        }
+        if (rootNode.has("swagger")) {
+            return new OpenAPIParser().readContents(rootNode.toString(), List.of(), null);
+        }
+        return new OpenAPIV3Parser().parseJsonNode(null, rootNode);
+    }
+
+    private static ObjectMapper getMapper(BufferedInputStream inputStream) throws IOException {
+        // the document is a JSON only if its first non-blank character opens an object
+        inputStream.mark(FORMAT_DETECTION_LIMIT);
+        try {
+            int character;
+            for (int read = 0; read < FORMAT_DETECTION_LIMIT && (character = inputStream.read()) != -1; read++) {
+                if (!Character.isWhitespace(character)) {
+                    return character == '{' ? Json.mapper() : Yaml.mapper();
+                }
+            }
+            return Yaml.mapper();
+        } finally {
+            inputStream.reset();
+        }
+    }
+}
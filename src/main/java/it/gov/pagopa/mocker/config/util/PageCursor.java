@@ -0,0 +1,49 @@
+package it.gov.pagopa.mocker.config.util;
+
+import it.gov.pagopa.mocker.config.exception.AppError;
+import it.gov.pagopa.mocker.config.exception.AppException;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * The opaque continuation token used by the keyset pagination. It contains the sort key
+ * (name and id) of the last element of a page and the number of the page it leads to.
+ */
+@Getter
+@AllArgsConstructor
+public class PageCursor {
+
+    private static final String SEPARATOR = "\u0000";
+
+    private final int page;
+
+    private final String id;
+
+    private final String name;
+
+    public String encode() {
+        String content = page + SEPARATOR + id + (name != null ? SEPARATOR + name : Constants.EMPTY_STRING);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static PageCursor decode(String cursor) {
+        try {
+            String content = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            // the name is the last part, so it is preserved even if it contains the separator
+            String[] parts = content.split(SEPARATOR, 3);
+            if (parts.length < 2 || parts[1].isEmpty()) {
+                throw new AppException(AppError.PAGE_CURSOR_BAD_REQUEST_INVALID, cursor);
+            }
+            int page = Integer.parseInt(parts[0]);
+            if (page < 0) {
+                throw new AppException(AppError.PAGE_CURSOR_BAD_REQUEST_INVALID, cursor);
+            }
+            return new PageCursor(page, parts[1], parts.length == 3 ? parts[2] : null);
+        } catch (IllegalArgumentException e) {
+            throw new AppException(AppError.PAGE_CURSOR_BAD_REQUEST_INVALID, cursor);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package it.gov.pagopa.mocker.config.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A text split, in a single pass, into literal segments and named placeholders, i.e. the injectable
+ * parameters of a response body (<code>${name}</code>) or the parameters of a resource URL
+ * (<code>{name}</code>). The same compiled template can be used for listing the parameters and for
+ * rendering the text with their values, without any regular expression.
+ */
+public class PlaceholderTemplate {
+
+    public enum Syntax {
+        /** Placeholders in the form <code>${name}</code>. */
+        DOLLAR_BRACES,
+        /** Placeholders in the form <code>{name}</code>. */
+        BRACES
+    }
+
+    private final String template;
+
+    // start (inclusive) and end (exclusive) of each placeholder, the literal segments are the text between them
+    private final int[] tokenBounds;
+
+    private final List<String> parameters;
+
+    private PlaceholderTemplate(String template, int[] tokenBounds, List<String> parameters) {
+        this.template = template;
+        this.tokenBounds = tokenBounds;
+        this.parameters = parameters;
+    }
+
+    public static PlaceholderTemplate compile(String template, Syntax syntax) {
+        int prefixLength = syntax == Syntax.DOLLAR_BRACES ? 2 : 1;
+        List<String> parameters = new ArrayList<>();
+        int[] bounds = new int[8];
+        int boundCount = 0;
+        int index = template.indexOf('{');
+        while (index >= 0) {
+            int start = index - prefixLength + 1;
+            if (start >= 0 && (syntax == Syntax.BRACES || template.charAt(start) == '$')) {
+
+                // the placeholder name must be not empty and closed right after its last valid character
+                int end = index + 1;
+                while (end < template.length() && isNameCharacter(template.charAt(end))) {
+                    end++;
+                }
+                if (end > index + 1 && end < template.length() && template.charAt(end) == '}') {
+                    if (boundCount + 2 > bounds.length) {
+                        bounds = Arrays.copyOf(bounds, bounds.length * 2);
+                    }
+                    bounds[boundCount++] = start;
+                    bounds[boundCount++] = end + 1;
+                    parameters.add(template.substring(index + 1, end));
+                    index = template.indexOf('{', end + 1);
+                    continue;
+                }
+            }
+            index = template.indexOf('{', index + 1);
+        }
+        return new PlaceholderTemplate(template, Arrays.copyOf(bounds, boundCount), Collections.unmodifiableList(parameters));
+    }
+
+    /**
+     * Returns the names of the placeholders, in the order they appear in the text, including the duplicates.
+     */
+    public List<String> getParameters() {
+        return parameters;
+    }
+
+    /**
+     * Renders the text replacing each placeholder with the value of the parameter with the same name.
+     * The values are inserted as they are and the placeholders without a value are left unchanged.
+     */
+    public String render(Map<String, String> values) {
+        if (parameters.isEmpty()) {
+            return template;
+        }
+        StringBuilder builder = new StringBuilder(template.length() + 16 * parameters.size());
+        int literalStart = 0;
+        for (int token = 0; token < parameters.size(); token++) {
+            int placeholderStart = tokenBounds[token * 2];
+            int placeholderEnd = tokenBounds[token * 2 + 1];
+            builder.append(template, literalStart, placeholderStart);
+            String value = values.get(parameters.get(token));
+            if (value != null) {
+                builder.append(value);
+            } else {
+                builder.append(template, placeholderStart, placeholderEnd);
+            }
+            literalStart = placeholderEnd;
+        }
+        return builder.append(template, literalStart, template.length()).toString();
+    }
+
+    private static boolean isNameCharacter(char character) {
+        return (character >= 'a' && character <= 'z')
+                || (character >= 'A' && character <= 'Z')
+                || (character >= '0' && character <= '9')
+                || character == '_'
+                || character == '-';
+    }
+}
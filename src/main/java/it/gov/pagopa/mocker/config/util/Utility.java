@@ -4,36 +4,72 @@ import it.gov.pagopa.mocker.config.model.PageInfo;
 import it.gov.pagopa.mocker.config.model.enumeration.HttpMethod;
 import it.gov.pagopa.mocker.config.model.mockresource.MockResource;
 import it.gov.pagopa.mocker.config.model.mockresource.SpecialRequestHeader;
+import it.gov.pagopa.mocker.config.repository.specification.PagedResult;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.domain.Page;
 
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.*;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 @Slf4j
 public class Utility {
 
+    private static final HexFormat HEX_FORMAT = HexFormat.of();
+
+    private static final ThreadLocal<MessageDigest> MD5_DIGEST = digestPerThread("MD5");
+
+    private static final ThreadLocal<MessageDigest> SHA256_DIGEST = digestPerThread("SHA-256");
+
     private Utility() {
     }
 
-    public static <T> PageInfo buildPageInfo(Page<T> page) {
+    public static <T> PageInfo buildPageInfo(PagedResult<T> page) {
         return PageInfo.builder()
-                .page(page.getNumber())
-                .limit(page.getSize())
-                .totalPages(page.getTotalPages())
-                .itemsFound(page.getNumberOfElements())
-                .totalItems(page.getTotalElements())
+                .page(page.getPage())
+                .limit(page.getLimit())
+                .totalPages(page.getTotalItems() != null ? (int) Math.ceil((double) page.getTotalItems() / page.getLimit()) : null)
+                .itemsFound(page.getContent().size())
+                .totalItems(page.getTotalItems())
+                .countMode(page.getCountMode())
+                .nextCursor(page.getNextCursor())
                 .build();
     }
 
+    /**
+     * Checks if the version of a resource matches the entity tags passed in an If-Match header.
+     * A missing header or the wildcard always matches. Resources without version are at version 0.
+     */
+    public static boolean matchesETag(String ifMatch, Long version) {
+        if (ifMatch == null || ifMatch.isBlank() || "*".equals(ifMatch.trim())) {
+            return true;
+        }
+        String currentTag = String.valueOf(Optional.ofNullable(version).orElse(0L));
+        return Arrays.stream(ifMatch.split(","))
+                .map(String::trim)
+                .map(tag -> tag.startsWith("W/") ? tag.substring(2) : tag)
+                .map(tag -> tag.replace("\"", Constants.EMPTY_STRING))
+                .anyMatch(currentTag::equals);
+    }
+
+    public static String generateETag(Long version) {
+        return String.valueOf(Optional.ofNullable(version).orElse(0L));
+    }
+
     public static String deNull(Object value) {
         return Optional.ofNullable(value).orElse("").toString();
     }
 
+    public static String normalize(String value) {
+        return value != null ? value.trim().toLowerCase(Locale.ROOT) : null;
+    }
+
+    public static String escapeRegex(String value) {
+        // escaping only the metacharacters, instead of quoting the whole value, keeps a literal prefix readable by MongoDB
+        // for the index bounds, while the other characters (including the non-ASCII ones) are matched as they are
+        return value.replaceAll("[\\\\^$.|?*+()\\[\\]{}]", "\\\\$0");
+    }
+
     public static String generateUUID() {
         return UUID.randomUUID().toString();
     }
@@ -43,7 +79,7 @@ public class Utility {
     }
 
     public static String generateResourceId(HttpMethod httpMethod, String subsystem, String resourceURL, List<SpecialRequestHeader> specialHeaders) {
-        StringBuilder urlBuilder = new StringBuilder();
+        StringBuilder urlBuilder = new StringBuilder(subsystem.length() + (resourceURL != null ? resourceURL.length() : 0) + 3);
         urlBuilder.append("/").append(subsystem);
         if (!subsystem.endsWith("/") && (resourceURL == null || !resourceURL.startsWith("/"))) {
             urlBuilder.append("/");
@@ -54,59 +90,109 @@ public class Utility {
                 urlBuilder.append("/");
             }
         }
-        String completeUrl = urlBuilder.toString().replace("//", "/");
 
-        StringJoiner specialHeadersBuilder = new StringJoiner(";");
-        specialHeaders.stream()
-                .map(header -> header.getName().trim().toLowerCase() + ":" + header.getValue().toLowerCase())
-                .sorted()
-                .forEach(specialHeadersBuilder::add);
-        return generateHash(httpMethod.name().toLowerCase(), completeUrl, specialHeadersBuilder.toString());
+        // the hashed content is built in a single buffer, in the same form used by generateHash on
+        // HTTP method, complete URL and special headers: the URL is never empty, so both are followed by a space
+        String method = httpMethod.name().toLowerCase();
+        StringBuilder builder = new StringBuilder(method.length() + urlBuilder.length() + 2 + specialHeaders.size() * 32);
+        builder.append(method).append(Constants.WHITESPACE);
+        appendCollapsingSlashes(builder, urlBuilder);
+        builder.append(Constants.WHITESPACE);
+        appendSpecialHeaders(builder, specialHeaders);
+        return toMD5Hex(builder);
     }
 
     public static String generateHash(String... content) {
-        String hashedContent = "";
-        try {
-            StringBuilder builder = new StringBuilder();
-            Iterator<String> it = Arrays.stream(content).iterator();
-            while (it.hasNext()) {
-                String element = it.next();
-                builder.append(element);
-                if (it.hasNext() && !Constants.EMPTY_STRING.equals(element)) {
-                    builder.append(Constants.WHITESPACE);
-                }
+        StringBuilder builder = new StringBuilder();
+        for (int index = 0; index < content.length; index++) {
+            String element = content[index];
+            builder.append(element);
+            if (index < content.length - 1 && !Constants.EMPTY_STRING.equals(element)) {
+                builder.append(Constants.WHITESPACE);
             }
-            byte[] requestIdBytes = builder.toString().getBytes(StandardCharsets.UTF_8);
-            MessageDigest md = MessageDigest.getInstance("MD5");
-            byte[] digestByteArray = md.digest(requestIdBytes);
-
-            StringBuilder hashStringBuilder = new StringBuilder();
-            for (byte b : digestByteArray) {
-                if ((0xff & b) < 0x10) {
-                    hashStringBuilder.append('0');
-                }
-                hashStringBuilder.append(Integer.toHexString(0xff & b));
+        }
+        return toMD5Hex(builder);
+    }
+
+    /**
+     * Generates the SHA-256 digest of the passed content as hexadecimal string, used for identifying
+     * the content regardless of where it is defined.
+     */
+    public static String generateContentHash(String content) {
+        MessageDigest md = SHA256_DIGEST.get();
+        if (md == null) {
+            return "";
+        }
+        return HEX_FORMAT.formatHex(md.digest(content.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String toMD5Hex(CharSequence content) {
+        MessageDigest md = MD5_DIGEST.get();
+        if (md == null) {
+            return "";
+        }
+        return HEX_FORMAT.formatHex(md.digest(content.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Appends the URL replacing each pair of consecutive slashes with a single one, scanning from the
+     * left without overlaps as made by <code>String.replace("//", "/")</code>.
+     */
+    private static void appendCollapsingSlashes(StringBuilder builder, CharSequence url) {
+        int length = url.length();
+        for (int index = 0; index < length; index++) {
+            char character = url.charAt(index);
+            builder.append(character);
+            if (character == '/' && index + 1 < length && url.charAt(index + 1) == '/') {
+                index++;
             }
-            hashedContent = hashStringBuilder.toString();
-        } catch (NoSuchAlgorithmException e) {
-            log.error("Error while generating the hash value from objects. No valid algorithm found as 'MD5'.", e);
         }
-        return hashedContent;
+    }
+
+    /**
+     * Appends the special headers as lowercase <code>name:value</code> pairs, sorted and separated by semicolon.
+     */
+    private static void appendSpecialHeaders(StringBuilder builder, List<SpecialRequestHeader> specialHeaders) {
+        int size = specialHeaders.size();
+        if (size == 0) {
+            return;
+        }
+        if (size == 1) {
+            builder.append(toCanonicalHeader(specialHeaders.get(0)));
+            return;
+        }
+        String[] headers = new String[size];
+        for (int index = 0; index < size; index++) {
+            headers[index] = toCanonicalHeader(specialHeaders.get(index));
+        }
+        Arrays.sort(headers);
+        builder.append(headers[0]);
+        for (int index = 1; index < size; index++) {
+            builder.append(';').append(headers[index]);
+        }
+    }
+
+    private static String toCanonicalHeader(SpecialRequestHeader header) {
+        return header.getName().trim().toLowerCase() + ":" + header.getValue().toLowerCase();
+    }
+
+    private static ThreadLocal<MessageDigest> digestPerThread(String algorithm) {
+        // a digest is not thread-safe but can be reused after each digest() call, so one instance is kept per thread
+        return ThreadLocal.withInitial(() -> {
+            try {
+                return MessageDigest.getInstance(algorithm);
+            } catch (NoSuchAlgorithmException e) {
+                log.error(String.format("Error while generating the hash value. No valid algorithm found as '%s'.", algorithm), e);
+                return null;
+            }
+        });
     }
 
     public static List<String> extractInjectableParameters(String body) {
-        return Pattern.compile("\\$\\{([a-zA-Z0-9_-]+)\\}")
-                .matcher(body)
-                .results()
-                .map(res -> res.group(1))
-                .collect(Collectors.toList());
+        return PlaceholderTemplate.compile(body, PlaceholderTemplate.Syntax.DOLLAR_BRACES).getParameters();
     }
 
     public static List<String> extractURLParameters(String url) {
-        return Pattern.compile("\\{([a-zA-Z0-9_-]+)\\}")
-                .matcher(url)
-                .results()
-                .map(res -> res.group(1))
-                .collect(Collectors.toList());
+        return PlaceholderTemplate.compile(url, PlaceholderTemplate.Syntax.BRACES).getParameters();
     }
 }
@@ -0,0 +1,81 @@
+package it.gov.pagopa.mocker.config.util.serializer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serializer for the values stored on Redis. The value is encoded with the passed Jackson mapper, so the
+ * payload format (i.e. JSON or the binary Smile format) depends on the mapper's factory. The encoded
+ * payloads bigger than the compression threshold are also compressed with GZIP: the compressed payloads
+ * are recognized on read by the GZIP magic number, that cannot be the first bytes of a JSON or Smile
+ * document, so no further framing is needed.
+ */
+public class RedisValueSerializer implements RedisSerializer<Object> {
+
+    private static final byte[] EMPTY_ARRAY = new byte[0];
+
+    private final ObjectMapper objectMapper;
+
+    private final int compressionThreshold;
+
+    /**
+     * @param objectMapper         the mapper used to encode and decode the values
+     * @param compressionThreshold the size in bytes over which the encoded value is compressed. A negative
+     *                             value disables the compression.
+     */
+    public RedisValueSerializer(ObjectMapper objectMapper, int compressionThreshold) {
+        this.objectMapper = objectMapper;
+        this.compressionThreshold = compressionThreshold;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return EMPTY_ARRAY;
+        }
+        try {
+            byte[] encoded = objectMapper.writeValueAsBytes(value);
+            return compressionThreshold >= 0 && encoded.length > compressionThreshold ? compress(encoded) : encoded;
+        } catch (IOException e) {
+            throw new SerializationException("Could not write the value to be stored on Redis: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            byte[] encoded = isCompressed(bytes) ? decompress(bytes) : bytes;
+            return objectMapper.readValue(encoded, Object.class);
+        } catch (IOException e) {
+            throw new SerializationException("Could not read the value stored on Redis: " + e.getMessage(), e);
+        }
+    }
+
+    private static boolean isCompressed(byte[] bytes) {
+        return bytes.length > 1 && bytes[0] == (byte) GZIPInputStream.GZIP_MAGIC && bytes[1] == (byte) (GZIPInputStream.GZIP_MAGIC >> 8);
+    }
+
+    private static byte[] compress(byte[] bytes) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(bytes.length / 2);
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+            gzipOutputStream.write(bytes);
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static byte[] decompress(byte[] bytes) throws IOException {
+        try (GZIPInputStream gzipInputStream = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+            return gzipInputStream.readAllBytes();
+        }
+    }
+}
@@ -25,6 +25,12 @@ public class MockResourceValidation {
         }
     }
 
+    public static void checkRuleIdDuplication(Set<String> alreadyAssignedRuleIds, String ruleId, String mockResourceId) {
+        if (ruleId != null && alreadyAssignedRuleIds.contains(ruleId)) {
+            throw new AppException(AppError.MOCK_RESOURCE_BAD_REQUEST_DUPLICATE_RULE_ID, mockResourceId, ruleId);
+        }
+    }
+
     public static void checkConditionOrderDuplication(Set<Integer> alreadAssignedOrderCardinality, Integer order, String mockRuleName) {
         if (alreadAssignedOrderCardinality.contains(order)) {
             throw new AppException(AppError.MOCK_RESOURCE_BAD_REQUEST_DUPLICATE_CONDITION_ORDER, mockRuleName);
@@ -1,6 +1,8 @@
 package it.gov.pagopa.mocker.config.util.validation;
 
 import it.gov.pagopa.mocker.config.entity.ArchetypeEntity;
+import it.gov.pagopa.mocker.config.entity.MockResourceEntity;
+import it.gov.pagopa.mocker.config.entity.MockRuleEntity;
 import it.gov.pagopa.mocker.config.model.archetype.Archetype;
 import it.gov.pagopa.mocker.config.model.archetype.ArchetypeResponse;
 import it.gov.pagopa.mocker.config.model.archetype.MockResourceFromArchetype;
@@ -12,7 +14,9 @@ import it.gov.pagopa.mocker.config.model.mockresource.MockRule;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Optional;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 public class RequestSemanticValidator {
 
@@ -22,39 +26,70 @@ public class RequestSemanticValidator {
 
         Set<Integer> assignedRuleOrderCardinality = new HashSet<>();
         for (MockRule mockRule : mockResource.getRules()) {
+            validate(mockRule, assignedRuleOrderCardinality);
+        }
+    }
 
-            String mockRuleName = mockRule.getName();
+    public static void validateNewRule(MockRule mockRule, MockResourceEntity mockResourceEntity) {
 
-            // check if there is a duplicate value on rule order value
-            int ruleOrder = mockRule.getOrder();
-            MockResourceValidation.checkRuleOrderDuplication(assignedRuleOrderCardinality, ruleOrder);
-            assignedRuleOrderCardinality.add(ruleOrder);
+        List<MockRuleEntity> mockRuleEntities = Optional.ofNullable(mockResourceEntity.getRules()).orElse(List.of());
 
-            Set<Integer> assignedConditionOrderCardinality = new HashSet<>();
-            for (MockCondition mockCondition : mockRule.getConditions()) {
+        // check if the rule to be added does not reuse the identifier of an existing rule
+        Set<String> assignedRuleIds = mockRuleEntities.stream().map(MockRuleEntity::getId).collect(Collectors.toSet());
+        MockResourceValidation.checkRuleIdDuplication(assignedRuleIds, mockRule.getId(), mockResourceEntity.getId());
 
-                // check if there is a duplicate value on condition order value
-                int conditionOrder = mockCondition.getOrder();
-                MockResourceValidation.checkConditionOrderDuplication(assignedConditionOrderCardinality, conditionOrder, mockRuleName);
-                assignedConditionOrderCardinality.add(conditionOrder);
+        // only the passed rule is validated, the other rules of the resource were already validated on their write
+        Set<Integer> assignedRuleOrderCardinality = mockRuleEntities.stream()
+                .map(MockRuleEntity::getOrder)
+                .collect(Collectors.toSet());
+        validate(mockRule, assignedRuleOrderCardinality);
+    }
 
-                // check if the content type JSON,XML will be evaluated as other than body
-                MockResourceValidation.checkContentTypeCongruency(mockCondition, mockRuleName);
+    public static void validate(MockRule mockRule, MockResourceEntity mockResourceEntity) {
 
-                // check if there aren't the following cases: condition_value=null in non-nullable condition, condition_value=non-null in unary condition
-                MockResourceValidation.checkConditionCongruency(mockCondition, mockRuleName);
+        // only the passed rule is validated, excluding the rule it replaces, as the others were already validated on their write
+        Set<Integer> assignedRuleOrderCardinality = Optional.ofNullable(mockResourceEntity.getRules())
+                .orElse(List.of())
+                .stream()
+                .filter(mockRuleEntity -> !mockRuleEntity.getId().equals(mockRule.getId()))
+                .map(MockRuleEntity::getOrder)
+                .collect(Collectors.toSet());
+        validate(mockRule, assignedRuleOrderCardinality);
+    }
 
-                // check, if condition type is regex evaluation, if the pattern is correct
-                MockResourceValidation.checkRegexValidity(mockCondition, mockRuleName);
-            }
+    private static void validate(MockRule mockRule, Set<Integer> assignedRuleOrderCardinality) {
 
-            // check if the body response is a valid Base64 content
-            MockResourceValidation.checkBodyEncoding(mockRule);
+        String mockRuleName = mockRule.getName();
+
+        // check if there is a duplicate value on rule order value
+        int ruleOrder = mockRule.getOrder();
+        MockResourceValidation.checkRuleOrderDuplication(assignedRuleOrderCardinality, ruleOrder);
+        assignedRuleOrderCardinality.add(ruleOrder);
+
+        Set<Integer> assignedConditionOrderCardinality = new HashSet<>();
+        for (MockCondition mockCondition : mockRule.getConditions()) {
+
+            // check if there is a duplicate value on condition order value
+            int conditionOrder = mockCondition.getOrder();
+            MockResourceValidation.checkConditionOrderDuplication(assignedConditionOrderCardinality, conditionOrder, mockRuleName);
+            assignedConditionOrderCardinality.add(conditionOrder);
+
+            // check if the content type JSON,XML will be evaluated as other than body
+            MockResourceValidation.checkContentTypeCongruency(mockCondition, mockRuleName);
+
+            // check if there aren't the following cases: condition_value=null in non-nullable condition, condition_value=non-null in unary condition
+            MockResourceValidation.checkConditionCongruency(mockCondition, mockRuleName);
+
+            // check, if condition type is regex evaluation, if the pattern is correct
+            MockResourceValidation.checkRegexValidity(mockCondition, mockRuleName);
         }
+
+        // check if the body response is a valid Base64 content
+        MockResourceValidation.checkBodyEncoding(mockRule);
     }
 
     public static void validate(Archetype archetype) {
-        validate(archetype);
+        validate(archetype, null);
     }
 
     public static void validate(Archetype archetype, ArchetypeEntity archetypeEntity) {
@@ -0,0 +1,171 @@
+package it.gov.pagopa.mocker.config.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class RedisBatchPublisherTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final BlockingQueue<List<RedisRepository.RedisWrite>> flushedBatches = new LinkedBlockingQueue<>();
+
+    private final CountDownLatch flushing = new CountDownLatch(1);
+
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    private RedisBatchPublisher publisher;
+
+    @AfterEach
+    void tearDown() {
+        released.countDown();
+        publisher.shutdown();
+    }
+
+    @Test
+    void writesOnTheSameKeyAreCoalescedIntoTheLatest() throws Exception {
+        createPublisher(10, 30000, 30000);
+        CompletableFuture<Void> blocking = blockWorker();
+
+        // while the worker is busy, the second write on the key replaces the first one still queued
+        CompletableFuture<Void> first = publisher.publishAll(List.of(write("key", "first")));
+        CompletableFuture<Void> second = publisher.publishAll(List.of(write("key", "second")));
+        assertEquals(1, publisher.getQueueSize());
+
+        released.countDown();
+        blocking.get(5, TimeUnit.SECONDS);
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(write("blocking", "value")), flushedBatches.poll(5, TimeUnit.SECONDS));
+        assertEquals(List.of(write("key", "second")), flushedBatches.poll(5, TimeUnit.SECONDS));
+        assertEquals(1, meterRegistry.get("mocker.redis.publisher.coalesced").counter().count());
+        assertEquals(2, meterRegistry.get("mocker.redis.publisher.published").counter().count());
+    }
+
+    @Test
+    void writesAreRejectedWhenTheQueueIsFull() throws Exception {
+        createPublisher(1, 30000, 30000);
+        blockWorker();
+
+        CompletableFuture<Void> queued = publisher.publishAll(List.of(write("queued", "value")));
+        CompletableFuture<Void> rejected = publisher.publishAll(List.of(write("rejected", "value")));
+        ExecutionException exception = assertThrows(ExecutionException.class, () -> rejected.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(RejectedExecutionException.class, exception.getCause());
+        assertEquals(1, meterRegistry.get("mocker.redis.publisher.rejected").counter().count());
+
+        // the writes accepted before are still applied
+        released.countDown();
+        queued.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void waitingForTheWritesTimesOut() {
+        createPublisher(10, 100, 30000);
+        blockWorker();
+
+        IllegalStateException exception = assertThrows(IllegalStateException.class, () -> publisher.publishAllAndWait(List.of(write("key", "value"))));
+        assertInstanceOf(TimeoutException.class, exception.getCause());
+    }
+
+    @Test
+    void queuedWritesAreDrainedOnShutdown() throws Exception {
+        createPublisher(10, 30000, 30000);
+        CompletableFuture<Void> blocking = blockWorker();
+        CompletableFuture<Void> queued = publisher.publishAll(List.of(write("first", "value"), write("second", "value")));
+
+        // the shutdown waits for the queued writes, while the new ones are rejected
+        CompletableFuture<Void> shutdown = CompletableFuture.runAsync(publisher::shutdown);
+        while (!(boolean) ReflectionTestUtils.getField(publisher, "stopping")) {
+            Thread.sleep(10);
+        }
+        CompletableFuture<Void> afterShutdown = publisher.publishAll(List.of(write("third", "value")));
+        assertTrue(afterShutdown.isCompletedExceptionally());
+        released.countDown();
+        shutdown.get(5, TimeUnit.SECONDS);
+
+        assertTrue(blocking.isDone() && !blocking.isCompletedExceptionally());
+        assertTrue(queued.isDone() && !queued.isCompletedExceptionally());
+        assertEquals(0, publisher.getQueueSize());
+        assertEquals(3, meterRegistry.get("mocker.redis.publisher.published").counter().count());
+    }
+
+    @Test
+    void writesNotDrainedInTimeFailOnShutdown() {
+        createPublisher(10, 30000, 100);
+        blockWorker();
+        CompletableFuture<Void> queued = publisher.publishAll(List.of(write("queued", "value")));
+
+        // the worker is still writing when the shutdown timeout expires, but the callers of the queued writes are not left waiting
+        publisher.shutdown();
+        assertThrows(CancellationException.class, () -> queued.get(5, TimeUnit.SECONDS));
+    }
+
+    private void createPublisher(int queueCapacity, long awaitTimeout, long shutdownTimeout) {
+        RedisRepository redisRepository = mock(RedisRepository.class);
+        doAnswer(invocation -> {
+            Collection<RedisRepository.RedisWrite> writes = invocation.getArgument(0);
+            if (flushing.getCount() > 0) {
+                flushing.countDown();
+                awaitRelease();
+            }
+            flushedBatches.add(List.copyOf(writes));
+            return null;
+        }).when(redisRepository).applyAll(anyCollection());
+
+        publisher = new RedisBatchPublisher();
+        ReflectionTestUtils.setField(publisher, "redisRepository", redisRepository);
+        ReflectionTestUtils.setField(publisher, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(publisher, "queueCapacity", queueCapacity);
+        ReflectionTestUtils.setField(publisher, "workers", 1);
+        ReflectionTestUtils.setField(publisher, "batchSize", 100);
+        ReflectionTestUtils.setField(publisher, "enqueueTimeout", 10L);
+        ReflectionTestUtils.setField(publisher, "shutdownTimeout", shutdownTimeout);
+        ReflectionTestUtils.setField(publisher, "awaitTimeout", awaitTimeout);
+        publisher.init();
+    }
+
+    /**
+     * Waits for the release ignoring the interruptions, as a write blocked on the Redis connection.
+     */
+    private void awaitRelease() {
+        boolean interrupted = false;
+        while (released.getCount() > 0) {
+            try {
+                released.await();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Publishes a write and waits until the single worker is busy writing it, so the next writes stay queued.
+     */
+    private CompletableFuture<Void> blockWorker() {
+        CompletableFuture<Void> blocking = publisher.publishAll(List.of(write("blocking", "value")));
+        try {
+            assertTrue(flushing.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+        }
+        return blocking;
+    }
+
+    private static RedisRepository.RedisWrite write(String key, Object value) {
+        return new RedisRepository.RedisWrite(key, value);
+    }
+}
@@ -0,0 +1,149 @@
+package it.gov.pagopa.mocker.config.repository.specification;
+
+import it.gov.pagopa.mocker.config.entity.MockResourceEntity;
+import it.gov.pagopa.mocker.config.model.enumeration.CountMode;
+import it.gov.pagopa.mocker.config.util.PageCursor;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class KeysetPaginationTest {
+
+    // null names are sorted first, as MongoDB does
+    private static final Comparator<MockResourceEntity> SORT = Comparator
+            .comparing(MockResourceEntity::getName, Comparator.nullsFirst(Comparator.<String>naturalOrder()))
+            .thenComparing(MockResourceEntity::getId);
+
+    private final List<MockResourceEntity> collection = new ArrayList<>();
+
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.find(any(Query.class), eq(MockResourceEntity.class))).thenAnswer(invocation -> {
+            Query query = invocation.getArgument(0);
+            assertEquals(new Document("name", 1).append("id", 1), query.getSortObject());
+            return collection.stream()
+                    .filter(mockResourceEntity -> matches(query.getQueryObject(), mockResourceEntity))
+                    .sorted(SORT)
+                    .skip(query.getSkip())
+                    .limit(query.getLimit())
+                    .toList();
+        });
+    }
+
+    @Test
+    void cursorsVisitEachElementOnce() {
+        // duplicate names and null names, in an order different from the sorted one
+        String[] names = {"beta", null, "alpha", "beta", "", null, "alpha", "gamma", "beta", null, "", "alpha"};
+        for (int index = 0; index < names.length; index++) {
+            collection.add(resource(String.format("%032x", (index * 7) % names.length), names[index]));
+        }
+        List<String> expectedIds = collection.stream().sorted(SORT).map(MockResourceEntity::getId).toList();
+
+        for (int limit = 1; limit <= names.length + 1; limit++) {
+            List<String> visitedIds = new ArrayList<>();
+            PageCursor cursor = null;
+            int expectedPage = 0;
+            do {
+                PagedResult<MockResourceEntity> result = find(PageRequest.of(0, limit), cursor);
+                assertEquals(expectedPage++, result.getPage());
+                assertEquals((long) names.length, result.getTotalItems());
+                result.getContent().forEach(mockResourceEntity -> visitedIds.add(mockResourceEntity.getId()));
+                cursor = result.getNextCursor() != null ? PageCursor.decode(result.getNextCursor()) : null;
+            } while (cursor != null);
+            assertEquals(expectedIds, visitedIds, "Different elements visited with limit " + limit);
+        }
+    }
+
+    @Test
+    void cursorAfterANullNameContinuesOnTheNamedElements() {
+        collection.add(resource("00000000000000000000000000000001", null));
+        collection.add(resource("00000000000000000000000000000002", null));
+        collection.add(resource("00000000000000000000000000000000", "alpha"));
+
+        PagedResult<MockResourceEntity> result = find(PageRequest.of(0, 1), new PageCursor(1, "00000000000000000000000000000001", null));
+        assertEquals(List.of("00000000000000000000000000000002"), ids(result));
+        PageCursor cursor = PageCursor.decode(result.getNextCursor());
+        assertNull(cursor.getName());
+        assertEquals(2, cursor.getPage());
+
+        result = find(PageRequest.of(0, 1), cursor);
+        assertEquals(List.of("00000000000000000000000000000000"), ids(result));
+        assertNull(result.getNextCursor());
+    }
+
+    @Test
+    void pageWithoutCursorUsesTheOffset() {
+        for (int index = 0; index < 10; index++) {
+            collection.add(resource(String.format("%032x", index), "name"));
+        }
+        PagedResult<MockResourceEntity> result = find(PageRequest.of(2, 3), null);
+        assertEquals(2, result.getPage());
+        assertEquals(List.of(String.format("%032x", 6), String.format("%032x", 7), String.format("%032x", 8)), ids(result));
+        assertEquals(String.format("%032x", 8), PageCursor.decode(result.getNextCursor()).getId());
+
+        result = find(PageRequest.of(3, 3), null);
+        assertEquals(List.of(String.format("%032x", 9)), ids(result));
+        assertNull(result.getNextCursor());
+    }
+
+    private PagedResult<MockResourceEntity> find(PageRequest pageable, PageCursor cursor) {
+        return KeysetPagination.find(mongoTemplate, new Query(), pageable, cursor, MockResourceEntity.class,
+                MockResourceEntity::getId, MockResourceEntity::getName, CountMode.EXACT, query -> (long) collection.size());
+    }
+
+    private static List<String> ids(PagedResult<MockResourceEntity> result) {
+        return result.getContent().stream().map(MockResourceEntity::getId).toList();
+    }
+
+    private static MockResourceEntity resource(String id, String name) {
+        return MockResourceEntity.builder().id(id).name(name).build();
+    }
+
+    // evaluates the subset of the query operators used by the keyset pagination
+    private static boolean matches(Document filter, MockResourceEntity mockResourceEntity) {
+        for (Map.Entry<String, Object> entry : filter.entrySet()) {
+            if (entry.getKey().equals("$or")) {
+                if (((List<?>) entry.getValue()).stream().noneMatch(clause -> matches((Document) clause, mockResourceEntity))) {
+                    return false;
+                }
+                continue;
+            }
+            String value = switch (entry.getKey()) {
+                case "id" -> mockResourceEntity.getId();
+                case "name" -> mockResourceEntity.getName();
+                default -> throw new IllegalArgumentException("Unexpected field " + entry.getKey());
+            };
+            if (!(entry.getValue() instanceof Document operators)) {
+                if (!Objects.equals(value, entry.getValue())) {
+                    return false;
+                }
+                continue;
+            }
+            for (Map.Entry<String, Object> operator : operators.entrySet()) {
+                boolean matched = switch (operator.getKey()) {
+                    case "$gt" -> value != null && value.compareTo((String) operator.getValue()) > 0;
+                    case "$ne" -> !Objects.equals(value, operator.getValue());
+                    default -> throw new IllegalArgumentException("Unexpected operator " + operator.getKey());
+                };
+                if (!matched) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
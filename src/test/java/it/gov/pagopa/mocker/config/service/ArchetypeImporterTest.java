@@ -0,0 +1,163 @@
+package it.gov.pagopa.mocker.config.service;
+
+import it.gov.pagopa.mocker.config.entity.ArchetypeEntity;
+import it.gov.pagopa.mocker.config.model.archetype.ArchetypeHandlingResult;
+import it.gov.pagopa.mocker.config.model.enumeration.ArchetypeImportMode;
+import it.gov.pagopa.mocker.config.model.enumeration.HttpMethod;
+import it.gov.pagopa.mocker.config.repository.ArchetypeRepository;
+import it.gov.pagopa.mocker.config.repository.specification.BulkWriteSummary;
+import it.gov.pagopa.mocker.config.util.OpenAPIExtractor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ArchetypeImporterTest {
+
+    private static final String SUBSYSTEM = "mocker/api";
+
+    private final List<List<String>> writtenBatches = new ArrayList<>();
+
+    private final List<ArchetypeEntity> replaced = new ArrayList<>();
+
+    private final List<String> deleted = new ArrayList<>();
+
+    private final Set<String> changedConcurrently = new HashSet<>();
+
+    private ArchetypeRepository archetypeRepository;
+
+    @BeforeEach
+    void setUp() {
+        archetypeRepository = mock(ArchetypeRepository.class);
+
+        // the replacements of the archetypes changed by a concurrent write do not match their expected version
+        when(archetypeRepository.applyChanges(anyList(), anyList(), anyCollection())).thenAnswer(invocation -> {
+            List<ArchetypeEntity> insertions = invocation.getArgument(0);
+            List<ArchetypeEntity> replacements = invocation.getArgument(1);
+            Collection<String> deletionIds = invocation.getArgument(2);
+            List<String> batch = new ArrayList<>();
+            insertions.forEach(archetypeEntity -> batch.add(getResourceKey(archetypeEntity)));
+            replacements.forEach(archetypeEntity -> batch.add(getResourceKey(archetypeEntity)));
+            writtenBatches.add(batch);
+            List<ArchetypeEntity> applied = replacements.stream().filter(archetypeEntity -> !changedConcurrently.contains(archetypeEntity.getId())).toList();
+            replaced.addAll(applied);
+            deleted.addAll(deletionIds);
+            return new BulkWriteSummary(insertions.size(), applied.size(), deletionIds.size(), replacements.size() - applied.size());
+        });
+    }
+
+    @Test
+    void skipExistingInsertsOnlyTheNewOperations() {
+        when(archetypeRepository.findResourcesBySubsystemUrl(SUBSYSTEM)).thenReturn(List.of(
+                stored(null, HttpMethod.GET, "/a", null, null),
+                stored(null, HttpMethod.GET, "/b", null, null)));
+        ArchetypeImporter archetypeImporter = createImporter(ArchetypeImportMode.SKIP_EXISTING);
+
+        archetypeImporter.accept(extracted(HttpMethod.GET, "/a", "changed"));
+        archetypeImporter.accept(extracted(HttpMethod.POST, "/a", "new"));
+        archetypeImporter.accept(extracted(HttpMethod.GET, "/c", "new"));
+        archetypeImporter.accept(extracted(HttpMethod.GET, "/d", "new"));
+        ArchetypeHandlingResult result = archetypeImporter.complete(true);
+
+        // the changed operation is not replaced and the removed one is not deleted, even if requested
+        assertEquals(3, result.getGeneratedArchetypes());
+        assertEquals(1, result.getUnchangedArchetypes());
+        assertNull(result.getUpdatedArchetypes());
+        assertNull(result.getConflictedArchetypes());
+        assertNull(result.getDeletedArchetypes());
+        assertNull(result.getRetainedArchetypes());
+        assertEquals(List.of(List.of("POST /a", "GET /c"), List.of("GET /d")), writtenBatches);
+        assertTrue(deleted.isEmpty());
+        verify(archetypeRepository, never()).findFingerprintsBySubsystemUrl(anyString());
+    }
+
+    @Test
+    void diffReplacesTheChangedOperationsAndDeletesTheRemovedOnes() {
+        when(archetypeRepository.findFingerprintsBySubsystemUrl(SUBSYSTEM)).thenReturn(List.of(
+                stored("a", HttpMethod.GET, "/a", "same", 1L),
+                stored("b", HttpMethod.GET, "/b", "old", 3L),
+                stored("d", HttpMethod.GET, "/d", "removed", 1L)));
+        ArchetypeImporter archetypeImporter = createImporter(ArchetypeImportMode.DIFF);
+
+        archetypeImporter.accept(extracted(HttpMethod.GET, "/a", "same"));
+        archetypeImporter.accept(extracted(HttpMethod.GET, "/b", "new"));
+        archetypeImporter.accept(extracted(HttpMethod.GET, "/c", "new"));
+        ArchetypeHandlingResult result = archetypeImporter.complete(true);
+
+        assertEquals(1, result.getGeneratedArchetypes());
+        assertEquals(1, result.getUpdatedArchetypes());
+        assertEquals(0, result.getConflictedArchetypes());
+        assertEquals(1, result.getDeletedArchetypes());
+        assertEquals(1, result.getUnchangedArchetypes());
+        assertEquals(0, result.getRetainedArchetypes());
+
+        // the replacement keeps the identifier of the stored archetype and the version it was read at
+        assertEquals(1, replaced.size());
+        assertEquals("b", replaced.get(0).getId());
+        assertEquals(3L, replaced.get(0).getVersion());
+        assertEquals(List.of("d"), deleted);
+    }
+
+    @Test
+    void diffRetainsTheRemovedOperationsIfTheirDeletionIsNotRequested() {
+        when(archetypeRepository.findFingerprintsBySubsystemUrl(SUBSYSTEM)).thenReturn(List.of(
+                stored("a", HttpMethod.GET, "/a", "same", 1L),
+                stored("d", HttpMethod.GET, "/d", "removed", 1L),
+                stored("e", HttpMethod.DELETE, "/e", "removed", 1L)));
+        ArchetypeImporter archetypeImporter = createImporter(ArchetypeImportMode.DIFF);
+
+        archetypeImporter.accept(extracted(HttpMethod.GET, "/a", "same"));
+        ArchetypeHandlingResult result = archetypeImporter.complete(false);
+
+        assertEquals(0, result.getDeletedArchetypes());
+        assertEquals(2, result.getRetainedArchetypes());
+        assertEquals(1, result.getUnchangedArchetypes());
+        assertTrue(deleted.isEmpty());
+    }
+
+    @Test
+    void replacementsLosingTheVersionRaceAreReportedAsConflicted() {
+        when(archetypeRepository.findFingerprintsBySubsystemUrl(SUBSYSTEM)).thenReturn(List.of(
+                stored("a", HttpMethod.GET, "/a", "old", 1L),
+                stored("b", HttpMethod.GET, "/b", "old", 1L)));
+        changedConcurrently.add("b");
+        ArchetypeImporter archetypeImporter = createImporter(ArchetypeImportMode.DIFF);
+
+        archetypeImporter.accept(extracted(HttpMethod.GET, "/a", "new"));
+        archetypeImporter.accept(extracted(HttpMethod.GET, "/b", "new"));
+        ArchetypeHandlingResult result = archetypeImporter.complete(false);
+
+        // each compared archetype is counted once, so none of them is lost by the result
+        assertEquals(1, result.getUpdatedArchetypes());
+        assertEquals(1, result.getConflictedArchetypes());
+        assertEquals(0, result.getUnchangedArchetypes());
+        assertEquals(List.of("a"), replaced.stream().map(ArchetypeEntity::getId).toList());
+    }
+
+    private ArchetypeImporter createImporter(ArchetypeImportMode mode) {
+        return new ArchetypeImporter(archetypeRepository, mock(ArchetypeSchemaService.class), SUBSYSTEM, mode, 2);
+    }
+
+    private static ArchetypeEntity stored(String id, HttpMethod httpMethod, String resourceUrl, String fingerprint, Long version) {
+        return ArchetypeEntity.builder()
+                .id(id)
+                .subsystemUrl(SUBSYSTEM)
+                .httpMethod(httpMethod)
+                .resourceUrl(resourceUrl)
+                .fingerprint(fingerprint)
+                .version(version)
+                .build();
+    }
+
+    private static OpenAPIExtractor.ExtractedArchetype extracted(HttpMethod httpMethod, String resourceUrl, String fingerprint) {
+        return new OpenAPIExtractor.ExtractedArchetype(stored(UUID.randomUUID().toString(), httpMethod, resourceUrl, fingerprint, null), List.of());
+    }
+
+    private static String getResourceKey(ArchetypeEntity archetypeEntity) {
+        return archetypeEntity.getHttpMethod() + " " + archetypeEntity.getResourceUrl();
+    }
+}
@@ -0,0 +1,154 @@
+package it.gov.pagopa.mocker.config.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.bulk.BulkWriteError;
+import it.gov.pagopa.mocker.config.entity.MockResourceEntity;
+import it.gov.pagopa.mocker.config.exception.AppError;
+import it.gov.pagopa.mocker.config.exception.AppException;
+import it.gov.pagopa.mocker.config.model.enumeration.BulkItemStatus;
+import it.gov.pagopa.mocker.config.model.mockresource.MockResource;
+import it.gov.pagopa.mocker.config.model.mockresource.MockResourceBulkResult;
+import org.bson.BsonDocument;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.modelmapper.ModelMapper;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.validation.Validation;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MockResourceBulkServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+
+    private MongoTemplate mongoTemplate;
+
+    private BulkOperations bulkOperations;
+
+    private MockResourceSyncService mockResourceSyncService;
+
+    private MockResourceBulkService mockResourceBulkService;
+
+    @BeforeEach
+    void setUp() {
+        bulkOperations = mock(BulkOperations.class);
+        when(bulkOperations.insert(anyList())).thenReturn(bulkOperations);
+        mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), eq(MockResourceEntity.class))).thenReturn(bulkOperations);
+
+        // the identifier of the resource is taken from its URL, so each line can define a distinct one
+        MockResourceService mockResourceService = mock(MockResourceService.class);
+        when(mockResourceService.toMockResourceEntity(any(MockResource.class))).thenAnswer(invocation -> {
+            MockResource mockResource = invocation.getArgument(0);
+            return MockResourceEntity.builder().id(mockResource.getResourceURL()).build();
+        });
+
+        mockResourceSyncService = mock(MockResourceSyncService.class);
+
+        mockResourceBulkService = new MockResourceBulkService();
+        ReflectionTestUtils.setField(mockResourceBulkService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(mockResourceBulkService, "mockResourceService", mockResourceService);
+        ReflectionTestUtils.setField(mockResourceBulkService, "mockResourceSyncService", mockResourceSyncService);
+        ReflectionTestUtils.setField(mockResourceBulkService, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(mockResourceBulkService, "validator", Validation.buildDefaultValidatorFactory().getValidator());
+        ReflectionTestUtils.setField(mockResourceBulkService, "modelMapper", mock(ModelMapper.class));
+        ReflectionTestUtils.setField(mockResourceBulkService, "batchSize", 10);
+    }
+
+    @Test
+    void eachLineIsMappedToItsOutcome() throws IOException {
+        // the errors of the unordered write refer to the position of the resource in the batch, not to its line
+        BulkOperationException exception = mock(BulkOperationException.class);
+        when(exception.getErrors()).thenReturn(List.of(
+                new BulkWriteError(11000, "E11000 duplicate key error", new BsonDocument(), 1),
+                new BulkWriteError(2, "Write failed", new BsonDocument(), 2)));
+        when(bulkOperations.execute()).thenThrow(exception);
+
+        List<MockResourceBulkResult> results = importLines(
+                resource("a"),
+                "{\"name\": ",
+                resource("b"),
+                "",
+                resource("invalid").replace("\"name\":\"invalid\"", "\"name\":\" \""),
+                resource("c"),
+                resource("d"));
+
+        // the invalid lines are reported while reading, the others after the write of their batch
+        assertEquals(List.of(
+                result(2, null, BulkItemStatus.INVALID),
+                result(5, null, BulkItemStatus.INVALID),
+                result(1, "a", BulkItemStatus.CREATED),
+                result(3, "b", BulkItemStatus.CONFLICT),
+                result(6, "c", BulkItemStatus.FAILED),
+                result(7, "d", BulkItemStatus.CREATED)), withoutDetail(results));
+        assertTrue(results.get(0).getDetail().startsWith("The line does not contain a valid mock resource"));
+        assertEquals("name: The name to be assigned to the mock resource cannot be null or blank.", results.get(1).getDetail());
+        assertEquals(new AppException(AppError.MOCK_RESOURCE_CONFLICT, "b").getMessage(), results.get(3).getDetail());
+        assertEquals("Write failed", results.get(4).getDetail());
+
+        // the changes are registered in the outbox before the write, then only the stored resources are published
+        InOrder inOrder = inOrder(mockResourceSyncService, bulkOperations);
+        inOrder.verify(mockResourceSyncService).prepare(List.of("a", "b", "c", "d"));
+        inOrder.verify(bulkOperations).execute();
+        inOrder.verify(mockResourceSyncService).publishAllCreated(argThat(created ->
+                created.stream().map(MockResourceEntity::getId).toList().equals(List.of("a", "d"))));
+    }
+
+    @Test
+    void batchIsFailedWhenTheOutboxCannotBeWritten() throws IOException {
+        ReflectionTestUtils.setField(mockResourceBulkService, "batchSize", 2);
+        doThrow(new DataAccessResourceFailureException("Outbox not reachable"))
+                .doNothing()
+                .when(mockResourceSyncService).prepare(anyCollection());
+
+        List<MockResourceBulkResult> results = importLines(resource("a"), resource("b"), resource("c"));
+
+        // the resources of the first batch are not written, as their changes could not be propagated
+        assertEquals(List.of(
+                result(1, "a", BulkItemStatus.FAILED),
+                result(2, "b", BulkItemStatus.FAILED),
+                result(3, "c", BulkItemStatus.CREATED)), withoutDetail(results));
+        verify(bulkOperations, times(1)).insert(anyList());
+        verify(bulkOperations).insert(argThat((List<Object> entities) -> entities.size() == 1
+                && "c".equals(((MockResourceEntity) entities.get(0)).getId())));
+        verify(mockResourceSyncService).publishAllCreated(argThat(created ->
+                created.stream().map(MockResourceEntity::getId).toList().equals(List.of("c"))));
+    }
+
+    private List<MockResourceBulkResult> importLines(String... lines) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        mockResourceBulkService.importMockResources(new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8)), outputStream);
+        List<MockResourceBulkResult> results = new ArrayList<>();
+        for (String line : outputStream.toString(StandardCharsets.UTF_8).split("\n")) {
+            results.add(objectMapper.readValue(line, MockResourceBulkResult.class));
+        }
+        return results;
+    }
+
+    private static String resource(String id) {
+        return String.format("{\"name\":\"%s\",\"subsystem\":\"mocker/api\",\"resource_url\":\"%s\",\"http_method\":\"GET\"," +
+                "\"special_headers\":[],\"is_active\":true,\"tags\":[],\"rules\":[]}", id, id);
+    }
+
+    private static MockResourceBulkResult result(long line, String id, BulkItemStatus status) {
+        return MockResourceBulkResult.builder().line(line).id(id).status(status).build();
+    }
+
+    private static List<MockResourceBulkResult> withoutDetail(List<MockResourceBulkResult> results) {
+        return results.stream().map(result -> result.toBuilder().detail(null).build()).toList();
+    }
+}
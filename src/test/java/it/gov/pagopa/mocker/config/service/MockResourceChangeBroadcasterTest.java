@@ -0,0 +1,192 @@
+package it.gov.pagopa.mocker.config.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.gov.pagopa.mocker.config.model.mockresource.MockResourceChangeEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class MockResourceChangeBroadcasterTest {
+
+    private static final long SEND_TIMEOUT = 100;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    private MockResourceChangeBroadcaster broadcaster;
+
+    @BeforeEach
+    void setUp() {
+        broadcaster = new MockResourceChangeBroadcaster();
+        ReflectionTestUtils.setField(broadcaster, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(broadcaster, "broadcastEnabled", false);
+        ReflectionTestUtils.setField(broadcaster, "broadcastQueueSize", 16);
+        ReflectionTestUtils.setField(broadcaster, "bufferSize", 16);
+        ReflectionTestUtils.setField(broadcaster, "senders", 2);
+        ReflectionTestUtils.setField(broadcaster, "timeout", 60000L);
+        ReflectionTestUtils.setField(broadcaster, "sendTimeout", SEND_TIMEOUT);
+        ReflectionTestUtils.setField(broadcaster, "heartbeatInterval", 60000L);
+        ReflectionTestUtils.setField(broadcaster, "sendCheckInterval", 60000L);
+        broadcaster.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        released.countDown();
+        broadcaster.shutdown();
+    }
+
+    @Test
+    void stalledSubscribersDoNotBlockTheOthers() throws InterruptedException {
+        // two clients that stopped reading hold both the sender threads
+        StalledEmitter firstStalled = new StalledEmitter();
+        StalledEmitter secondStalled = new StalledEmitter();
+        broadcaster.subscribe(null, firstStalled);
+        broadcaster.subscribe(null, secondStalled);
+        broadcaster.broadcast(List.of(event("first")));
+        assertTrue(firstStalled.sending.await(5, TimeUnit.SECONDS));
+        assertTrue(secondStalled.sending.await(5, TimeUnit.SECONDS));
+
+        RecordingEmitter healthy = new RecordingEmitter();
+        broadcaster.subscribe(null, healthy);
+        broadcaster.broadcast(List.of(event("second")));
+        assertNull(healthy.sent.poll(SEND_TIMEOUT, TimeUnit.MILLISECONDS));
+
+        // past the deadline the stalled clients are disconnected and their threads replaced
+        Thread.sleep(SEND_TIMEOUT);
+        broadcaster.disconnectStalledSubscribers();
+        assertNotNull(healthy.sent.poll(5, TimeUnit.SECONDS));
+        assertEquals(1, meterRegistry.get("mocker.changes.push.subscribers").gauge().value());
+        assertEquals(2, meterRegistry.get("mocker.changes.push.stalled").counter().count());
+        assertEquals(2, meterRegistry.get("mocker.changes.push.senders.stalled").gauge().value());
+
+        broadcaster.broadcast(List.of(event("third")));
+        assertNotNull(healthy.sent.poll(5, TimeUnit.SECONDS));
+
+        // when the blocked writes return, the stalled clients are completed and the pool shrinks back
+        released.countDown();
+        assertTrue(firstStalled.completed.await(5, TimeUnit.SECONDS));
+        assertTrue(secondStalled.completed.await(5, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (meterRegistry.get("mocker.changes.push.senders.stalled").gauge().value() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, meterRegistry.get("mocker.changes.push.senders.stalled").gauge().value());
+        assertFalse(healthy.completed);
+    }
+
+    @Test
+    void subscriberSendingInTimeIsNotDisconnected() throws InterruptedException {
+        RecordingEmitter healthy = new RecordingEmitter();
+        broadcaster.subscribe(null, healthy);
+        broadcaster.broadcast(List.of(event("first")));
+        assertNotNull(healthy.sent.poll(5, TimeUnit.SECONDS));
+
+        Thread.sleep(SEND_TIMEOUT);
+        broadcaster.disconnectStalledSubscribers();
+        assertEquals(1, meterRegistry.get("mocker.changes.push.subscribers").gauge().value());
+        assertEquals(0, meterRegistry.get("mocker.changes.push.stalled").counter().count());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void broadcastDoesNotWaitForRedis() throws InterruptedException {
+        RedisTemplate<String, Object> redisTemplate = mock(RedisTemplate.class);
+        CountDownLatch publishing = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            publishing.countDown();
+            released.await();
+            return 1L;
+        }).when(redisTemplate).convertAndSend(anyString(), any());
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        broadcaster.shutdown();
+        broadcaster = new MockResourceChangeBroadcaster();
+        ReflectionTestUtils.setField(broadcaster, "redisTemplateObj", redisTemplate);
+        ReflectionTestUtils.setField(broadcaster, "meterRegistry", registry);
+        ReflectionTestUtils.setField(broadcaster, "broadcastEnabled", true);
+        ReflectionTestUtils.setField(broadcaster, "broadcastQueueSize", 1);
+        ReflectionTestUtils.setField(broadcaster, "bufferSize", 16);
+        ReflectionTestUtils.setField(broadcaster, "senders", 1);
+        ReflectionTestUtils.setField(broadcaster, "heartbeatInterval", 60000L);
+        ReflectionTestUtils.setField(broadcaster, "sendCheckInterval", 60000L);
+        broadcaster.init();
+
+        // the caller returns while Redis is blocked, and the changes exceeding the queue are dropped
+        broadcaster.broadcast(List.of(event("first")));
+        assertTrue(publishing.await(5, TimeUnit.SECONDS));
+        broadcaster.broadcast(List.of(event("second")));
+        broadcaster.broadcast(List.of(event("third"), event("fourth")));
+        assertEquals(2, registry.get("mocker.changes.push.lost").counter().count());
+
+        released.countDown();
+        verify(redisTemplate, timeout(5000).times(2)).convertAndSend(anyString(), any());
+    }
+
+    private static MockResourceChangeEvent event(String id) {
+        return MockResourceChangeEvent.builder().id(id).subsystem("apiconfig/api/v1").version(1L).build();
+    }
+
+    /**
+     * An emitter whose client stopped reading: as a blocking write of the servlet container, the send
+     * ignores the interruptions and returns only when the connection is released.
+     */
+    private class StalledEmitter extends SseEmitter {
+
+        private final CountDownLatch sending = new CountDownLatch(1);
+
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            sending.countDown();
+            boolean interrupted = false;
+            while (released.getCount() > 0) {
+                try {
+                    released.await();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+    }
+
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final BlockingQueue<SseEventBuilder> sent = new LinkedBlockingQueue<>();
+
+        private volatile boolean completed;
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            sent.add(builder);
+        }
+
+        @Override
+        public void complete() {
+            completed = true;
+        }
+    }
+}
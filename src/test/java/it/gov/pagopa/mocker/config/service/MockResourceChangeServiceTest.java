@@ -0,0 +1,236 @@
+package it.gov.pagopa.mocker.config.service;
+
+import it.gov.pagopa.mocker.config.entity.MockResourceChangeEntity;
+import it.gov.pagopa.mocker.config.entity.MockResourceEntity;
+import it.gov.pagopa.mocker.config.entity.SyncStateEntity;
+import it.gov.pagopa.mocker.config.exception.AppException;
+import it.gov.pagopa.mocker.config.model.mockresource.MockResource;
+import it.gov.pagopa.mocker.config.model.mockresource.MockResourceChange;
+import it.gov.pagopa.mocker.config.model.mockresource.MockResourceChangeList;
+import it.gov.pagopa.mocker.config.repository.MockResourceChangeRepository;
+import it.gov.pagopa.mocker.config.repository.MockResourceRepository;
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MockResourceChangeServiceTest {
+
+    private static final long GAP_TIMEOUT = 10000;
+
+    private final Map<String, MockResourceEntity> database = new HashMap<>();
+
+    private final TreeMap<Long, MockResourceChangeEntity> changeLog = new TreeMap<>();
+
+    private long allocatedSequence;
+
+    private MockResourceChangeService mockResourceChangeService;
+
+    @BeforeEach
+    void setUp() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class), eq(SyncStateEntity.class))).thenAnswer(invocation -> {
+            Update update = invocation.getArgument(1);
+            allocatedSequence += ((Number) ((Document) update.getUpdateObject().get("$inc")).get("sequence")).longValue();
+            return SyncStateEntity.builder().id("mock_resource_changes").sequence(allocatedSequence).build();
+        });
+        when(mongoTemplate.findById(eq("mock_resource_changes"), eq(SyncStateEntity.class))).thenAnswer(invocation ->
+                allocatedSequence > 0 ? SyncStateEntity.builder().id("mock_resource_changes").sequence(allocatedSequence).build() : null);
+
+        MockResourceChangeRepository mockResourceChangeRepository = mock(MockResourceChangeRepository.class);
+        when(mockResourceChangeRepository.insert(anyIterable())).thenAnswer(invocation -> {
+            Iterable<MockResourceChangeEntity> entries = invocation.getArgument(0);
+            entries.forEach(entry -> changeLog.put(entry.getId(), entry));
+            return entries;
+        });
+        when(mockResourceChangeRepository.findByIdGreaterThanOrderByIdAsc(anyLong(), any(Pageable.class))).thenAnswer(invocation -> {
+            long since = invocation.getArgument(0);
+            Pageable pageable = invocation.getArgument(1);
+            return changeLog.tailMap(since, false).values().stream().limit(pageable.getPageSize()).toList();
+        });
+        when(mockResourceChangeRepository.findFirstByOrderByIdAsc()).thenAnswer(invocation ->
+                Optional.ofNullable(changeLog.firstEntry()).map(Map.Entry::getValue));
+        when(mockResourceChangeRepository.findFirstByChangedAtLessThanOrderByIdDesc(any(Instant.class))).thenAnswer(invocation -> {
+            Instant changedAt = invocation.getArgument(0);
+            return changeLog.descendingMap().values().stream().filter(entry -> entry.getChangedAt().isBefore(changedAt)).findFirst();
+        });
+
+        MockResourceRepository mockResourceRepository = mock(MockResourceRepository.class);
+        when(mockResourceRepository.findAllById(anyIterable())).thenAnswer(invocation -> {
+            List<MockResourceEntity> read = new ArrayList<>();
+            Iterable<String> ids = invocation.getArgument(0);
+            ids.forEach(id -> Optional.ofNullable(database.get(id)).ifPresent(read::add));
+            return read;
+        });
+
+        ModelMapper modelMapper = mock(ModelMapper.class);
+        when(modelMapper.map(any(MockResourceEntity.class), eq(MockResource.class))).thenAnswer(invocation -> new MockResource());
+
+        mockResourceChangeService = new MockResourceChangeService();
+        ReflectionTestUtils.setField(mockResourceChangeService, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(mockResourceChangeService, "mockResourceChangeRepository", mockResourceChangeRepository);
+        ReflectionTestUtils.setField(mockResourceChangeService, "mockResourceRepository", mockResourceRepository);
+        ReflectionTestUtils.setField(mockResourceChangeService, "modelMapper", modelMapper);
+        ReflectionTestUtils.setField(mockResourceChangeService, "gapTimeout", GAP_TIMEOUT);
+    }
+
+    @Test
+    void appendAssignsConsecutiveSequences() {
+        mockResourceChangeService.append(List.of("a", "b"));
+        mockResourceChangeService.append(List.of("c"));
+        mockResourceChangeService.append(List.of());
+
+        assertEquals(List.of(1L, 2L, 3L), List.copyOf(changeLog.keySet()));
+        assertEquals(List.of("a", "b", "c"), changeLog.values().stream().map(MockResourceChangeEntity::getResourceId).toList());
+        assertEquals(3, mockResourceChangeService.getLastAllocatedSequence());
+    }
+
+    @Test
+    void gapYoungerThanTheTimeoutStopsThePage() {
+        store("a", 1L);
+        store("b", 1L);
+        logChange(1, "a", Instant.now());
+        logChange(3, "b", Instant.now());
+
+        // the entry 2 can still be written by another writer, so the changes after it are not returned yet
+        MockResourceChangeList response = mockResourceChangeService.getChanges("0", 10);
+        assertEquals(List.of("a"), ids(response));
+        assertEquals("1", response.getNextToken());
+        assertFalse(response.isHasMore());
+
+        // once written, the client continues from the returned token
+        logChange(2, "c", Instant.now());
+        store("c", 1L);
+        response = mockResourceChangeService.getChanges(response.getNextToken(), 10);
+        assertEquals(List.of("c", "b"), ids(response));
+        assertEquals("3", response.getNextToken());
+    }
+
+    @Test
+    void gapOlderThanTheTimeoutIsSkipped() {
+        store("a", 1L);
+        store("b", 1L);
+        Instant expired = Instant.now().minusMillis(GAP_TIMEOUT * 2);
+        logChange(1, "a", expired);
+        logChange(3, "b", expired);
+
+        // the writer of the entry 2 is considered failed, so the changes after it are returned
+        MockResourceChangeList response = mockResourceChangeService.getChanges("0", 10);
+        assertEquals(List.of("a", "b"), ids(response));
+        assertEquals("3", response.getNextToken());
+    }
+
+    @Test
+    void repeatedChangesAreCoalesced() {
+        store("a", 3L);
+        store("b", 1L);
+        logChange(1, "a", Instant.now());
+        logChange(2, "b", Instant.now());
+        logChange(3, "a", Instant.now());
+
+        // each resource is returned once, at the position of its last change
+        MockResourceChangeList response = mockResourceChangeService.getChanges("0", 10);
+        assertEquals(List.of("b", "a"), ids(response));
+        assertEquals(List.of(2L, 3L), response.getChanges().stream().map(MockResourceChange::getSequence).toList());
+        assertEquals(3L, response.getChanges().get(1).getVersion());
+        assertEquals("3", response.getNextToken());
+    }
+
+    @Test
+    void deletedResourcesAreReturnedAsTombstones() {
+        store("a", 1L);
+        logChange(1, "a", Instant.now());
+        logChange(2, "b", Instant.now());
+
+        MockResourceChangeList response = mockResourceChangeService.getChanges("0", 10);
+        MockResourceChange stored = response.getChanges().get(0);
+        assertFalse(stored.isDeleted());
+        assertNotNull(stored.getResource());
+        MockResourceChange deleted = response.getChanges().get(1);
+        assertEquals("b", deleted.getId());
+        assertTrue(deleted.isDeleted());
+        assertNull(deleted.getVersion());
+        assertNull(deleted.getResource());
+    }
+
+    @Test
+    void fullPageHasMore() {
+        for (long sequence = 1; sequence <= 3; sequence++) {
+            logChange(sequence, "r" + sequence, Instant.now());
+        }
+        MockResourceChangeList response = mockResourceChangeService.getChanges("0", 2);
+        assertEquals(2, response.getChanges().size());
+        assertTrue(response.isHasMore());
+
+        response = mockResourceChangeService.getChanges(response.getNextToken(), 2);
+        assertEquals(List.of("r3"), ids(response));
+        assertFalse(response.isHasMore());
+    }
+
+    @Test
+    void tokenIsGoneOnceTheFollowingEntriesAreExpired() {
+        // the entries 1 to 4 were removed by the TTL index
+        Instant expired = Instant.now().minusMillis(GAP_TIMEOUT * 2);
+        logChange(5, "a", expired);
+        logChange(6, "b", expired);
+
+        AppException exception = assertThrows(AppException.class, () -> mockResourceChangeService.getChanges("3", 10));
+        assertEquals(HttpStatus.GONE, exception.getHttpStatus());
+
+        // the token of the last removed entry is still valid, as no change after it is lost
+        assertEquals("6", mockResourceChangeService.getChanges("4", 10).getNextToken());
+    }
+
+    @Test
+    void tokenIsNotGoneWhileTheMissingEntriesCanStillBeWritten() {
+        logChange(5, "a", Instant.now());
+        MockResourceChangeList response = mockResourceChangeService.getChanges("3", 10);
+        assertTrue(response.getChanges().isEmpty());
+        assertEquals("3", response.getNextToken());
+    }
+
+    @Test
+    void missingTokenReturnsTheCurrentPosition() {
+        logChange(1, "a", Instant.now().minusMillis(GAP_TIMEOUT * 2));
+        logChange(2, "b", Instant.now());
+
+        // the position is not moved past the entries that could still be preceded by a gap
+        MockResourceChangeList response = mockResourceChangeService.getChanges(null, 10);
+        assertTrue(response.getChanges().isEmpty());
+        assertEquals("1", response.getNextToken());
+    }
+
+    @Test
+    void malformedTokenIsRejected() {
+        for (String token : List.of("abc", "-1", "1.5", "")) {
+            AppException exception = assertThrows(AppException.class, () -> mockResourceChangeService.getChanges(token, 10));
+            assertEquals(HttpStatus.BAD_REQUEST, exception.getHttpStatus());
+        }
+    }
+
+    private void store(String id, Long version) {
+        database.put(id, MockResourceEntity.builder().id(id).version(version).build());
+    }
+
+    private void logChange(long sequence, String resourceId, Instant changedAt) {
+        changeLog.put(sequence, MockResourceChangeEntity.builder().id(sequence).resourceId(resourceId).changedAt(changedAt).build());
+    }
+
+    private static List<String> ids(MockResourceChangeList response) {
+        return response.getChanges().stream().map(MockResourceChange::getId).toList();
+    }
+}
@@ -0,0 +1,287 @@
+package it.gov.pagopa.mocker.config.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.gov.pagopa.mocker.config.entity.MockResourceEntity;
+import it.gov.pagopa.mocker.config.entity.OutboxEntity;
+import it.gov.pagopa.mocker.config.model.enumeration.RedisSyncMode;
+import it.gov.pagopa.mocker.config.model.mockresource.MockResourceChangeEvent;
+import it.gov.pagopa.mocker.config.repository.MockResourceRepository;
+import it.gov.pagopa.mocker.config.repository.OutboxRepository;
+import it.gov.pagopa.mocker.config.repository.RedisBatchPublisher;
+import it.gov.pagopa.mocker.config.repository.RedisRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class MockResourceSyncServiceTest {
+
+    private static final String RESOURCE_ID = "fb5363bcf68f687c9caeddbc221769f6";
+
+    private final Map<String, MockResourceEntity> database = new ConcurrentHashMap<>();
+
+    private final Map<String, Object> redis = new ConcurrentHashMap<>();
+
+    private final InMemoryOutbox outbox = new InMemoryOutbox();
+
+    private MockResourceRepository mockResourceRepository;
+
+    private RedisBatchPublisher redisBatchPublisher;
+
+    private OutboxRepository outboxRepository;
+
+    private MockResourceChangeBroadcaster mockResourceChangeBroadcaster;
+
+    @BeforeEach
+    void setUp() {
+        mockResourceChangeBroadcaster = mock(MockResourceChangeBroadcaster.class);
+
+        mockResourceRepository = mock(MockResourceRepository.class);
+        when(mockResourceRepository.findAllById(anyIterable())).thenAnswer(invocation -> readFromDatabase(invocation.getArgument(0)));
+
+        redisBatchPublisher = mock(RedisBatchPublisher.class);
+        doAnswer(invocation -> {
+            Collection<RedisRepository.RedisWrite> writes = invocation.getArgument(0);
+            writes.forEach(write -> {
+                if (write.value() == null) {
+                    redis.remove(write.key());
+                } else {
+                    redis.put(write.key(), write.value());
+                }
+            });
+            return null;
+        }).when(redisBatchPublisher).publishAllAndWait(anyCollection());
+
+        outboxRepository = mock(OutboxRepository.class);
+        doAnswer(invocation -> {
+            outbox.registerChanges(invocation.getArgument(0), invocation.getArgument(1));
+            return null;
+        }).when(outboxRepository).registerChanges(anyCollection(), anyBoolean());
+        when(outboxRepository.claimRelayable(anyString(), any(), any(), anyInt()))
+                .thenAnswer(invocation -> outbox.claimRelayable(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2), invocation.getArgument(3)));
+        when(outboxRepository.removeRelayed(anyString(), anyCollection()))
+                .thenAnswer(invocation -> outbox.removeRelayed(invocation.getArgument(0), invocation.getArgument(1)));
+        doAnswer(invocation -> {
+            outbox.releaseClaim(invocation.getArgument(0));
+            return null;
+        }).when(outboxRepository).releaseClaim(anyString());
+    }
+
+    @Test
+    void concurrentRelaysNeverLeaveAnOlderContentOnRedis() {
+        MockResourceSyncService firstRelay = createRelay();
+        MockResourceSyncService secondRelay = createRelay();
+        storeAndRegister(resource("first"));
+
+        // the first relay reads the old content, then the resource changes and the second relay runs before the first one writes
+        AtomicInteger reads = new AtomicInteger();
+        doAnswer(invocation -> {
+            List<MockResourceEntity> read = readFromDatabase(invocation.getArgument(0));
+            if (reads.incrementAndGet() == 1) {
+                storeAndRegister(resource("second"));
+                secondRelay.relayChanges();
+            }
+            return read;
+        }).when(mockResourceRepository).findAllById(anyIterable());
+        firstRelay.relayChanges();
+
+        // the change registered while the first relay was running is kept and relayed with the newer content
+        assertEquals("first", snapshotName());
+        assertEquals(1, outbox.records.size());
+        assertNull(outbox.records.get(RESOURCE_ID).getClaimedBy());
+
+        secondRelay.relayChanges();
+        assertEquals("second", snapshotName());
+        assertTrue(outbox.records.isEmpty());
+    }
+
+    @Test
+    void recordsClaimedByAnotherRelayAreSkipped() {
+        MockResourceSyncService firstRelay = createRelay();
+        MockResourceSyncService secondRelay = createRelay();
+        storeAndRegister(resource("first"));
+
+        // the second relay runs while the first one is writing on Redis
+        doAnswer(invocation -> {
+            secondRelay.relayChanges();
+            Collection<RedisRepository.RedisWrite> writes = invocation.getArgument(0);
+            writes.forEach(write -> redis.put(write.key(), write.value()));
+            return null;
+        }).when(redisBatchPublisher).publishAllAndWait(anyCollection());
+        firstRelay.relayChanges();
+
+        verify(redisBatchPublisher, times(1)).publishAllAndWait(anyCollection());
+        assertEquals("first", snapshotName());
+        assertTrue(outbox.records.isEmpty());
+    }
+
+    @Test
+    void failedBatchIsReleasedForAnotherRelay() {
+        MockResourceSyncService firstRelay = createRelay();
+        MockResourceSyncService secondRelay = createRelay();
+        storeAndRegister(resource("first"));
+
+        doThrow(new IllegalStateException("Redis not available")).when(redisBatchPublisher).publishAllAndWait(anyCollection());
+        firstRelay.relayChanges();
+        assertTrue(redis.isEmpty());
+        assertNull(outbox.records.get(RESOURCE_ID).getClaimedBy());
+
+        doAnswer(invocation -> {
+            Collection<RedisRepository.RedisWrite> writes = invocation.getArgument(0);
+            writes.forEach(write -> redis.put(write.key(), write.value()));
+            return null;
+        }).when(redisBatchPublisher).publishAllAndWait(anyCollection());
+        secondRelay.relayChanges();
+        assertEquals("first", snapshotName());
+        assertTrue(outbox.records.isEmpty());
+    }
+
+    @Test
+    void deletedResourceIsRemovedFromRedis() {
+        MockResourceSyncService relay = createRelay();
+        storeAndRegister(resource("first"));
+        relay.relayChanges();
+        assertEquals("first", snapshotName());
+
+        database.remove(RESOURCE_ID);
+        outbox.registerChanges(List.of(RESOURCE_ID), true);
+        relay.relayChanges();
+        assertFalse(redis.containsKey(RESOURCE_ID));
+        assertTrue(outbox.records.isEmpty());
+    }
+
+    @Test
+    void relayedChangesArePushedToTheSubscribers() {
+        MockResourceSyncService relay = createRelay();
+        storeAndRegister(resource("first"));
+
+        // a batch not written on Redis is not notified, as it is relayed again
+        doThrow(new IllegalStateException("Redis not available")).when(redisBatchPublisher).publishAllAndWait(anyCollection());
+        relay.relayChanges();
+        verify(mockResourceChangeBroadcaster, never()).broadcast(anyList());
+
+        doAnswer(invocation -> null).when(redisBatchPublisher).publishAllAndWait(anyCollection());
+        relay.relayChanges();
+        verify(mockResourceChangeBroadcaster).broadcast(List.of(MockResourceChangeEvent.builder().id(RESOURCE_ID).subsystem("apiconfig/api/v1").version(0L).build()));
+
+        // the subsystem of a removed resource is not known anymore
+        database.remove(RESOURCE_ID);
+        outbox.registerChanges(List.of(RESOURCE_ID), true);
+        relay.relayChanges();
+        verify(mockResourceChangeBroadcaster).broadcast(List.of(MockResourceChangeEvent.builder().id(RESOURCE_ID).deleted(true).build()));
+    }
+
+    private MockResourceSyncService createRelay() {
+        MockResourceSyncService relay = new MockResourceSyncService();
+        ReflectionTestUtils.setField(relay, "redisBatchPublisher", redisBatchPublisher);
+        ReflectionTestUtils.setField(relay, "mockResourceRepository", mockResourceRepository);
+        ReflectionTestUtils.setField(relay, "outboxRepository", outboxRepository);
+        ReflectionTestUtils.setField(relay, "mockResourceChangeService", mock(MockResourceChangeService.class));
+        ReflectionTestUtils.setField(relay, "mockResourceChangeBroadcaster", mockResourceChangeBroadcaster);
+        ReflectionTestUtils.setField(relay, "meterRegistry", new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(relay, "syncMode", RedisSyncMode.OUTBOX);
+        ReflectionTestUtils.setField(relay, "batchSize", 500);
+        ReflectionTestUtils.setField(relay, "pendingTimeout", 30000L);
+        ReflectionTestUtils.setField(relay, "lease", 60000L);
+        relay.registerMetrics();
+        return relay;
+    }
+
+    private void storeAndRegister(MockResourceEntity mockResourceEntity) {
+        database.put(mockResourceEntity.getId(), mockResourceEntity);
+        outbox.registerChanges(List.of(mockResourceEntity.getId()), true);
+    }
+
+    private List<MockResourceEntity> readFromDatabase(Iterable<String> ids) {
+        List<MockResourceEntity> read = new ArrayList<>();
+        ids.forEach(id -> Optional.ofNullable(database.get(id)).ifPresent(read::add));
+        return read;
+    }
+
+    private String snapshotName() {
+        return ((MockResourceEntity) redis.get(RESOURCE_ID)).getName();
+    }
+
+    private static MockResourceEntity resource(String name) {
+        return MockResourceEntity.builder()
+                .id(RESOURCE_ID)
+                .name(name)
+                .subsystemUrl("apiconfig/api/v1")
+                .rules(List.of())
+                .build();
+    }
+
+    /**
+     * The outbox collection, with the same semantics of the queries run by the criteria repository.
+     */
+    private static class InMemoryOutbox {
+
+        private final Map<String, OutboxEntity> records = new LinkedHashMap<>();
+
+        synchronized void registerChanges(Collection<String> ids, boolean ready) {
+            Instant now = Instant.now();
+            for (String id : ids) {
+                OutboxEntity record = records.computeIfAbsent(id, key -> OutboxEntity.builder().id(key).revision(0L).build());
+                record.setRevision(record.getRevision() + 1);
+                record.setReady(ready);
+                record.setUpdatedAt(now);
+            }
+        }
+
+        synchronized List<OutboxEntity> claimRelayable(String claim, Instant pendingBefore, Instant leaseUntil, int limit) {
+            Instant now = Instant.now();
+            return records.values().stream()
+                    .filter(record -> Boolean.TRUE.equals(record.getReady()) || record.getUpdatedAt().isBefore(pendingBefore))
+                    .filter(record -> record.getLeaseUntil() == null || record.getLeaseUntil().isBefore(now))
+                    .sorted(Comparator.comparing(OutboxEntity::getUpdatedAt))
+                    .limit(limit)
+                    .peek(record -> {
+                        record.setClaimedBy(claim);
+                        record.setLeaseUntil(leaseUntil);
+                    })
+                    .map(InMemoryOutbox::copy)
+                    .toList();
+        }
+
+        synchronized int removeRelayed(String claim, Collection<OutboxEntity> relayed) {
+            int removed = 0;
+            for (OutboxEntity relayedRecord : relayed) {
+                OutboxEntity record = records.get(relayedRecord.getId());
+                if (record != null && record.getRevision().equals(relayedRecord.getRevision()) && claim.equals(record.getClaimedBy())) {
+                    records.remove(relayedRecord.getId());
+                    removed++;
+                }
+            }
+            releaseClaim(claim);
+            return removed;
+        }
+
+        synchronized void releaseClaim(String claim) {
+            records.values().stream()
+                    .filter(record -> claim.equals(record.getClaimedBy()))
+                    .forEach(record -> {
+                        record.setClaimedBy(null);
+                        record.setLeaseUntil(null);
+                    });
+        }
+
+        private static OutboxEntity copy(OutboxEntity record) {
+            return OutboxEntity.builder()
+                    .id(record.getId())
+                    .revision(record.getRevision())
+                    .ready(record.getReady())
+                    .updatedAt(record.getUpdatedAt())
+                    .claimedBy(record.getClaimedBy())
+                    .leaseUntil(record.getLeaseUntil())
+                    .build();
+        }
+    }
+}
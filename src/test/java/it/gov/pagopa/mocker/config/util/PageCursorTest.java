@@ -0,0 +1,57 @@
+package it.gov.pagopa.mocker.config.util;
+
+import it.gov.pagopa.mocker.config.exception.AppException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageCursorTest {
+
+    @Test
+    void encodedCursorIsDecodedWithTheSameContent() {
+        List<String> names = Arrays.asList(null, "", "name", "a b", "\u00e8\u00dcn\u00efcode", "with\u0000separator", "\u0000", "ends with\u0000");
+        for (int page : new int[]{0, 1, 42, Integer.MAX_VALUE}) {
+            for (String name : names) {
+                PageCursor cursor = PageCursor.decode(new PageCursor(page, "fb5363bcf68f687c9caeddbc221769f6", name).encode());
+                assertEquals(page, cursor.getPage());
+                assertEquals("fb5363bcf68f687c9caeddbc221769f6", cursor.getId());
+                assertEquals(name, cursor.getName(), () -> String.format("Different name for [%s]", name));
+            }
+        }
+    }
+
+    @Test
+    void encodedCursorIsUrlSafe() {
+        String cursor = new PageCursor(3, "fb5363bcf68f687c9caeddbc221769f6", "???>>>~~~").encode();
+        assertTrue(cursor.matches("[A-Za-z0-9_-]+"), cursor);
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        List<String> cursors = List.of(
+                "",
+                "not base64!",
+                "====",
+                encode("1"),
+                encode("1\u0000"),
+                encode("\u0000id"),
+                encode("x\u0000id"),
+                encode("-1\u0000id"),
+                encode("1.5\u0000id"),
+                encode("99999999999\u0000id\u0000name"));
+        for (String cursor : cursors) {
+            AppException exception = assertThrows(AppException.class, () -> PageCursor.decode(cursor), cursor);
+            assertEquals(HttpStatus.BAD_REQUEST, exception.getHttpStatus());
+        }
+    }
+
+    private static String encode(String content) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
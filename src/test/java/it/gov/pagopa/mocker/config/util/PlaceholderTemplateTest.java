@@ -0,0 +1,133 @@
+package it.gov.pagopa.mocker.config.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class PlaceholderTemplateTest {
+
+    private static final Pattern LEGACY_INJECTABLE_PARAMETER = Pattern.compile("\\$\\{([a-zA-Z0-9_-]+)\\}");
+
+    private static final Pattern LEGACY_URL_PARAMETER = Pattern.compile("\\{([a-zA-Z0-9_-]+)\\}");
+
+    private static final String[] TEMPLATE_FRAGMENTS = {"", "a", "b", "id", "x-1", "_", "{", "}", "$", "${", "{{", "}}", "$$",
+            "{a}", "${a}", "{b}", "${b}", "{x-1}", "${}", "{}", "\\", "/", "\u00e8", " ", "?x=1"};
+
+    private static final String[] VALUE_FRAGMENTS = {"", "1", "v", "/", "\u00e8", " ", "abc", "x-1", "$", "\\", "$1", "{a}", "${b}"};
+
+    private static final String[] NAMES = {"a", "b", "id", "x-1", "_"};
+
+    @Test
+    void parametersMatchLegacyImplementation() {
+        Random random = new Random(19_10_2026L);
+        for (int iteration = 0; iteration < 20_000; iteration++) {
+            String template = randomString(random, TEMPLATE_FRAGMENTS, 8);
+            assertEquals(legacyExtract(LEGACY_INJECTABLE_PARAMETER, template),
+                    PlaceholderTemplate.compile(template, PlaceholderTemplate.Syntax.DOLLAR_BRACES).getParameters(),
+                    () -> String.format("Different injectable parameters for [%s]", template));
+            assertEquals(legacyExtract(LEGACY_URL_PARAMETER, template),
+                    PlaceholderTemplate.compile(template, PlaceholderTemplate.Syntax.BRACES).getParameters(),
+                    () -> String.format("Different URL parameters for [%s]", template));
+        }
+    }
+
+    @Test
+    void renderMatchesLegacyPattern() {
+        Random random = new Random(10_19_2026L);
+        for (int iteration = 0; iteration < 20_000; iteration++) {
+            String template = randomString(random, TEMPLATE_FRAGMENTS, 8);
+            Map<String, String> values = new LinkedHashMap<>();
+            for (String name : NAMES) {
+                if (random.nextBoolean()) {
+                    values.put(name, randomString(random, VALUE_FRAGMENTS, 3));
+                }
+            }
+            assertEquals(legacyRender(template, values),
+                    PlaceholderTemplate.compile(template, PlaceholderTemplate.Syntax.BRACES).render(values),
+                    () -> String.format("Different rendering for [%s] with %s", template, values));
+        }
+    }
+
+    @Test
+    void nestedAndAdjacentPlaceholders() {
+        assertEquals(List.of("a"), PlaceholderTemplate.compile("${${a}}", PlaceholderTemplate.Syntax.DOLLAR_BRACES).getParameters());
+        assertEquals(List.of("a"), PlaceholderTemplate.compile("${${a}}", PlaceholderTemplate.Syntax.BRACES).getParameters());
+        assertEquals(List.of("a"), PlaceholderTemplate.compile("{{a}}", PlaceholderTemplate.Syntax.BRACES).getParameters());
+        assertEquals(List.of(), PlaceholderTemplate.compile("{{a}}", PlaceholderTemplate.Syntax.DOLLAR_BRACES).getParameters());
+        assertEquals(List.of("a"), PlaceholderTemplate.compile("${a}{b}", PlaceholderTemplate.Syntax.DOLLAR_BRACES).getParameters());
+        assertEquals(List.of("a", "b"), PlaceholderTemplate.compile("${a}{b}", PlaceholderTemplate.Syntax.BRACES).getParameters());
+        assertEquals(List.of("a", "a"), PlaceholderTemplate.compile("{a}{a}", PlaceholderTemplate.Syntax.BRACES).getParameters());
+
+        Map<String, String> values = Map.of("a", "1", "b", "2");
+        assertEquals("${1}", PlaceholderTemplate.compile("${${a}}", PlaceholderTemplate.Syntax.DOLLAR_BRACES).render(values));
+        assertEquals("{1}", PlaceholderTemplate.compile("{{a}}", PlaceholderTemplate.Syntax.BRACES).render(values));
+        assertEquals("$12", PlaceholderTemplate.compile("${a}{b}", PlaceholderTemplate.Syntax.BRACES).render(values));
+    }
+
+    @Test
+    void unclosedPlaceholdersAreLiterals() {
+        for (String template : List.of("{", "${", "/x/{id", "/x/{id/{b}", "{a", "{a-", "${a $}", "/x/{}")) {
+            assertEquals(legacyExtract(LEGACY_URL_PARAMETER, template),
+                    PlaceholderTemplate.compile(template, PlaceholderTemplate.Syntax.BRACES).getParameters(), template);
+            assertEquals(legacyRender(template, Map.of("id", "1", "a", "2", "b", "3")),
+                    PlaceholderTemplate.compile(template, PlaceholderTemplate.Syntax.BRACES).render(Map.of("id", "1", "a", "2", "b", "3")), template);
+        }
+        assertEquals("/x/{id/3", PlaceholderTemplate.compile("/x/{id/{b}", PlaceholderTemplate.Syntax.BRACES).render(Map.of("id", "1", "b", "3")));
+    }
+
+    @Test
+    void valuesAreInsertedLiterally() {
+        PlaceholderTemplate template = PlaceholderTemplate.compile("/x/{id}/{b}", PlaceholderTemplate.Syntax.BRACES);
+        Map<String, String> values = new LinkedHashMap<>();
+        values.put("id", "a$b\\c$1");
+        values.put("b", "{id}");
+        assertEquals("/x/a$b\\c$1/{id}", template.render(values));
+
+        // the URL was rendered with a replaceAll for each parameter, which read the values as replacement
+        // patterns and rescanned the text already rendered: the new rendering fixes both the behaviours
+        assertThrows(IllegalArgumentException.class, () -> legacyReplaceAll("/x/{id}", Map.of("id", "a$b")));
+        assertEquals("/x/ab", legacyReplaceAll("/x/{id}", Map.of("id", "a\\b")));
+        Map<String, String> rescannedValues = new LinkedHashMap<>();
+        rescannedValues.put("b", "{a}");
+        rescannedValues.put("a", "1");
+        assertEquals("/x/1/1", legacyReplaceAll("/x/{a}/{b}", rescannedValues));
+        assertEquals("/x/1/{a}", PlaceholderTemplate.compile("/x/{a}/{b}", PlaceholderTemplate.Syntax.BRACES).render(rescannedValues));
+    }
+
+    private static String randomString(Random random, String[] fragments, int maxFragments) {
+        StringBuilder builder = new StringBuilder();
+        for (int fragment = random.nextInt(maxFragments + 1); fragment > 0; fragment--) {
+            builder.append(fragments[random.nextInt(fragments.length)]);
+        }
+        return builder.toString();
+    }
+
+    // the regular expressions used for extracting the parameters before the single-pass parsing
+    private static List<String> legacyExtract(Pattern pattern, String template) {
+        return pattern.matcher(template)
+                .results()
+                .map(res -> res.group(1))
+                .collect(Collectors.toList());
+    }
+
+    // the same regular expression applied in a single pass, with the values taken literally
+    private static String legacyRender(String template, Map<String, String> values) {
+        return LEGACY_URL_PARAMETER.matcher(template)
+                .replaceAll(res -> Matcher.quoteReplacement(values.getOrDefault(res.group(1), res.group())));
+    }
+
+    // the rendering of the resource URL before the single-pass parsing
+    private static String legacyReplaceAll(String template, Map<String, String> values) {
+        String rendered = template;
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            rendered = rendered.replaceAll("\\{" + value.getKey() + "\\}", value.getValue());
+        }
+        return rendered;
+    }
+}
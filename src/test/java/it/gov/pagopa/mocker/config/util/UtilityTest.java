@@ -0,0 +1,119 @@
+package it.gov.pagopa.mocker.config.util;
+
+import it.gov.pagopa.mocker.config.model.enumeration.HttpMethod;
+import it.gov.pagopa.mocker.config.model.mockresource.SpecialRequestHeader;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UtilityTest {
+
+    private static final String[] URL_FRAGMENTS = {"", "/", "//", "///", "api", "v1", "{id}", "Pagamenti", "\u00e8", "a b", "?x=1"};
+
+    private static final String[] HEADER_FRAGMENTS = {"", " ", "X-Id", "soapaction", "SOAPAction ", "\u00dcn\u00efcode", ":", ";", "a b"};
+
+    private static final String[] REGEX_FRAGMENTS = {"a", "B", "1", " ", "-", "_", "\u00e8", ".", "*", "+", "?", "^", "$", "|", "\\", "\\E", "\\Q",
+            "(", ")", "[", "]", "{", "}", "{2}", "[a-z]", ".*"};
+
+    @Test
+    void generateResourceIdMatchesLegacyImplementation() throws Exception {
+        Random random = new Random(20_26_10_17L);
+        for (int iteration = 0; iteration < 5_000; iteration++) {
+            HttpMethod httpMethod = HttpMethod.values()[random.nextInt(HttpMethod.values().length)];
+            String subsystem = randomString(random, URL_FRAGMENTS, 4);
+            String resourceURL = random.nextInt(10) == 0 ? null : randomString(random, URL_FRAGMENTS, 6);
+            List<SpecialRequestHeader> specialHeaders = new ArrayList<>();
+            for (int header = random.nextInt(4); header > 0; header--) {
+                SpecialRequestHeader specialHeader = new SpecialRequestHeader();
+                specialHeader.setName(randomString(random, HEADER_FRAGMENTS, 3));
+                specialHeader.setValue(randomString(random, HEADER_FRAGMENTS, 3));
+                specialHeaders.add(specialHeader);
+            }
+
+            assertEquals(legacyGenerateResourceId(httpMethod, subsystem, resourceURL, specialHeaders),
+                    Utility.generateResourceId(httpMethod, subsystem, resourceURL, specialHeaders),
+                    () -> String.format("Different id for [%s] [%s] [%s] %s", httpMethod, subsystem, resourceURL, specialHeaders));
+        }
+    }
+
+    @Test
+    void generateHashMatchesLegacyImplementation() throws Exception {
+        Random random = new Random(17_10_2026L);
+        for (int iteration = 0; iteration < 5_000; iteration++) {
+            String[] content = new String[random.nextInt(5)];
+            for (int index = 0; index < content.length; index++) {
+                content[index] = randomString(random, URL_FRAGMENTS, 3);
+            }
+            assertEquals(legacyGenerateHash(content), Utility.generateHash(content), () -> "Different hash for " + Arrays.toString(content));
+        }
+    }
+
+    @Test
+    void escapeRegexMatchesTheValueLiterally() {
+        Random random = new Random(26_10_17L);
+        for (int iteration = 0; iteration < 5_000; iteration++) {
+            String value = randomString(random, REGEX_FRAGMENTS, 6);
+            Pattern pattern = Pattern.compile("^" + Utility.escapeRegex(value));
+            assertTrue(pattern.matcher(value).matches(), () -> String.format("The escaped [%s] does not match itself", value));
+            assertTrue(pattern.matcher(value + "x").lookingAt(), () -> String.format("The escaped [%s] is not a prefix", value));
+            assertFalse(pattern.matcher(value + "x").matches(), () -> String.format("The escaped [%s] matches a longer value", value));
+        }
+    }
+
+    private static String randomString(Random random, String[] fragments, int maxFragments) {
+        StringBuilder builder = new StringBuilder();
+        for (int fragment = random.nextInt(maxFragments + 1); fragment > 0; fragment--) {
+            builder.append(fragments[random.nextInt(fragments.length)]);
+        }
+        return builder.toString();
+    }
+
+    // the implementation used before the single-pass canonicalization, whose ids are already stored
+    private static String legacyGenerateResourceId(HttpMethod httpMethod, String subsystem, String resourceURL, List<SpecialRequestHeader> specialHeaders) throws Exception {
+        StringBuilder urlBuilder = new StringBuilder();
+        urlBuilder.append("/").append(subsystem);
+        if (!subsystem.endsWith("/") && (resourceURL == null || !resourceURL.startsWith("/"))) {
+            urlBuilder.append("/");
+        }
+        if (resourceURL != null) {
+            urlBuilder.append(resourceURL);
+            if (!resourceURL.endsWith("/")) {
+                urlBuilder.append("/");
+            }
+        }
+        String completeUrl = urlBuilder.toString().replace("//", "/");
+
+        StringJoiner specialHeadersBuilder = new StringJoiner(";");
+        specialHeaders.stream()
+                .map(header -> header.getName().trim().toLowerCase() + ":" + header.getValue().toLowerCase())
+                .sorted()
+                .forEach(specialHeadersBuilder::add);
+        return legacyGenerateHash(httpMethod.name().toLowerCase(), completeUrl, specialHeadersBuilder.toString());
+    }
+
+    private static String legacyGenerateHash(String... content) throws Exception {
+        StringBuilder builder = new StringBuilder();
+        Iterator<String> it = Arrays.stream(content).iterator();
+        while (it.hasNext()) {
+            String element = it.next();
+            builder.append(element);
+            if (it.hasNext() && !"".equals(element)) {
+                builder.append(" ");
+            }
+        }
+        byte[] digestByteArray = MessageDigest.getInstance("MD5").digest(builder.toString().getBytes(StandardCharsets.UTF_8));
+        StringBuilder hashStringBuilder = new StringBuilder();
+        for (byte b : digestByteArray) {
+            if ((0xff & b) < 0x10) {
+                hashStringBuilder.append('0');
+            }
+            hashStringBuilder.append(Integer.toHexString(0xff & b));
+        }
+        return hashStringBuilder.toString();
+    }
+}